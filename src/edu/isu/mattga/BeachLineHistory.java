@@ -0,0 +1,234 @@
+package edu.isu.mattga;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Beach line after every event of a sweep, for scrubbing the sweep line back and forth. The arcs
+// are kept in a persistent treap: a tree ordered by index and balanced by random priorities,
+// where an event copies only the nodes on the paths it changes and shares the rest with the
+// beach line before it. Each event costs O(log n) time and room, and any past beach line is
+// found by a binary search over the events.
+//
+// The sweep thread logs the events, and other threads read the history through snapshots. What
+// a snapshot covers is never written again: nodes don't change once made, the log only grows,
+// into new arrays once full, and clear() starts new ones.
+public class BeachLineHistory {
+
+	// Arc of the site of a node, with the arcs of left before it and those of right after it
+	private static class Node {
+		final Point		site;
+		final int		priority;	// Of a node over those below it
+		final Node		left, right;
+		final int		size;		// Arcs in the subtree
+
+		Node(Point site, int priority, Node left, Node right) {
+			this.site = site;
+			this.priority = priority;
+			this.left = left;
+			this.right = right;
+			size = 1 + size(left) + size(right);
+		}
+	}
+
+	// Event i happened at sweep position ys[i] and left the beach line roots[i]
+	private double[]	ys = new double[64];
+	private Node[]		roots = new Node[64];
+	private int			events;
+
+	private Node		cur;	// Beach line after the last event logged
+	private Node[]		parts = new Node[2];
+	private Random		rgen = new Random();
+
+	public BeachLineHistory() {
+		clear();
+	}
+
+	public void clear() {
+		ys = new double[64];
+		roots = new Node[64];
+		events = 0;
+		cur = null;
+	}
+
+	public int size() {
+		return events;
+	}
+
+	// Site p split the arc at index k, or started the beach line if it was empty
+	void splitArc(double y, int k, Point p) {
+		if (cur == null) {
+			cur = insert(cur, 0, p);
+		} else {
+			cur = insert(cur, k+1, get(cur, k));
+			cur = insert(cur, k+1, p);
+		}
+		log(y);
+	}
+
+	// Site p added an arc after the last one
+	void appendArc(double y, Point p) {
+		cur = insert(cur, size(cur), p);
+		log(y);
+	}
+
+	// The arc at index k disappeared
+	void removeArc(double y, int k) {
+		cur = remove(cur, k);
+		log(y);
+	}
+
+	private void log(double y) {
+		if (events == ys.length) {
+			ys = Arrays.copyOf(ys, 2*events);
+			roots = Arrays.copyOf(roots, 2*events);
+		}
+		ys[events] = y;
+		roots[events] = cur;
+		events++;
+	}
+
+	// The history so far, which stays as it is while more events are logged
+	public Snapshot snapshot() {
+		return new Snapshot(ys, roots, events);
+	}
+
+	public static class Snapshot {
+		private final double[]	ys;
+		private final Node[]	roots;
+		private final int		events;
+
+		private Snapshot(double[] ys, Node[] roots, int events) {
+			this.ys = ys;
+			this.roots = roots;
+			this.events = events;
+		}
+
+		public int size() {
+			return events;
+		}
+
+		// Number of events that happened above sweep position y
+		public int countAbove(double y) {
+			return BeachLineHistory.countAbove(ys, events, y);
+		}
+
+		// Sites of the arcs of the beach line at sweep position y, left to right, which is how it
+		// was after the last event above y
+		public Point[] at(double y) {
+			return after(countAbove(y));
+		}
+
+		// Sites of the arcs of the beach line after the first e events, left to right
+		public Point[] after(int e) {
+			Node t = (e > 0 ? roots[e-1] : null);
+			Point[] sites = new Point[BeachLineHistory.size(t)];
+			fill(t, sites, 0);
+
+			return sites;
+		}
+	}
+
+	// Number of the first n events that happened above y. Events come in order of falling y.
+	private static int countAbove(double[] ys, int n, double y) {
+		int lo = 0, hi = n;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (ys[mid] > y)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+
+		return lo;
+	}
+
+	private static int size(Node t) {
+		return (t != null ? t.size : 0);
+	}
+
+	// Site of the arc at index k of t
+	private static Point get(Node t, int k) {
+		while (true) {
+			int ls = size(t.left);
+			if (k == ls)
+				return t.site;
+			if (k < ls) {
+				t = t.left;
+			} else {
+				t = t.right;
+				k -= ls + 1;
+			}
+		}
+	}
+
+	// Puts the sites of t in a from index i, left to right, and returns the index after them
+	private static int fill(Node t, Point[] a, int i) {
+		while (t != null) {
+			i = fill(t.left, a, i);
+			a[i++] = t.site;
+			t = t.right;
+		}
+
+		return i;
+	}
+
+	// Copy of t with an arc of p inserted at index k
+	private Node insert(Node t, int k, Point p) {
+		int priority = rgen.nextInt();
+		return insert(t, k, p, priority);
+	}
+
+	private Node insert(Node t, int k, Point p, int priority) {
+		if (t == null)
+			return new Node(p, priority, null, null);
+		if (priority > t.priority) {
+			split(t, k);
+			return new Node(p, priority, parts[0], parts[1]);
+		}
+
+		int ls = size(t.left);
+		if (k <= ls)
+			return new Node(t.site, t.priority, insert(t.left, k, p, priority), t.right);
+		return new Node(t.site, t.priority, t.left, insert(t.right, k - ls - 1, p, priority));
+	}
+
+	// Splits t into copies of its first k arcs, in parts[0], and the rest, in parts[1]
+	private void split(Node t, int k) {
+		if (t == null) {
+			parts[0] = parts[1] = null;
+			return;
+		}
+
+		int ls = size(t.left);
+		if (k <= ls) {
+			split(t.left, k);
+			parts[1] = new Node(t.site, t.priority, parts[1], t.right);
+		} else {
+			split(t.right, k - ls - 1);
+			parts[0] = new Node(t.site, t.priority, t.left, parts[0]);
+		}
+	}
+
+	// Copy of t without the arc at index k
+	private static Node remove(Node t, int k) {
+		int ls = size(t.left);
+		if (k < ls)
+			return new Node(t.site, t.priority, remove(t.left, k), t.right);
+		if (k > ls)
+			return new Node(t.site, t.priority, t.left, remove(t.right, k - ls - 1));
+
+		return merge(t.left, t.right);
+	}
+
+	// The arcs of a followed by those of b
+	private static Node merge(Node a, Node b) {
+		if (a == null)
+			return b;
+		if (b == null)
+			return a;
+		if (a.priority > b.priority)
+			return new Node(a.site, a.priority, a.left, merge(a.right, b));
+
+		return new Node(b.site, b.priority, merge(a, b.left), b.right);
+	}
+}
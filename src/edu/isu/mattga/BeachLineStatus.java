@@ -1,211 +1,308 @@
-package edu.isu.mattga;
-
-import java.util.ArrayList;
-import java.util.List;
-
-import edu.isu.mattga.DCEL.HalfEdge;
-import edu.isu.mattga.VoronoiDiagram.Event;
-
-
-public class BeachLineStatus {
-
-	private List<BreakPoint> l;
-
-	public BeachLineStatus() {
-		l = new ArrayList<BreakPoint>();
-	}
-	
-	public BreakPoint[] removeArc(Point p) {
-
-		int i = 0;
-		BreakPoint rbp = null, lbp = null;
-		double bp_x;
-		for (; i < l.size(); i++) {
-			bp_x = l.get(i).getPositionX(p.y);
-			if (p.x - bp_x < 1e-8) {
-				assert(Math.abs(l.get(i+1).getPositionX(p.y) - p.x) < 1e-8);
-				lbp = l.get(i);
-				rbp = l.get(i+1);
-				break;
-			}
-		}
-
-		if (lbp == null)
-			return null;
-
-		BreakPoint newbp = new BreakPoint();
-		newbp.leftArc = lbp.leftArc;
-		newbp.rightArc = rbp.rightArc;
-		l.remove(i); // remove lbp
-		l.remove(i); // remove rbp
-		l.add(i, newbp);
-
-		return new BreakPoint[]{lbp, rbp, newbp};
-	}
-	
-	public void initWithArc(Point p) {
-		
-		// Add imaginary breakpoint on the right
-		Arc a = new Arc(p);
-		BreakPoint bp = new BreakPoint();
-		bp.leftArc = a;
-		l.add(bp);
-	
-	}
-	
-	// Arc a split by the new arc of site point p
-	public BreakPoint[] splitArc(Arc a, Point p) {
-		
-		Arc newArc = new Arc(p);
-		
-		BreakPoint newbp1 = new BreakPoint();
-		newbp1.rightArc = newArc;
-		
-		BreakPoint newbp2 = new BreakPoint();
-		newbp2.leftArc = newArc;
-		
-		if (l.size() == 1) {
-			newbp1.leftArc = a.copy();	// these can't have a circle event
-			newbp2.rightArc = a.copy();	// so copy is ok
-			l.remove(0);
-			l.add(newbp1);
-			l.add(newbp2);
-		} else {
-			BreakPoint bp = l.get(0);
-			if (bp.leftArc == a) {
-				newbp1.leftArc = a;
-				newbp2.rightArc = bp.leftArc = a.copy();
-				l.add(0, newbp2);
-				l.add(0, newbp1);
-			} else {
-				int i = 0;
-				for (; i < l.size(); i++) {
-					bp = l.get(i);
-					if (bp.rightArc == a)
-						break;
-				}
-				newbp1.leftArc = bp.rightArc = a.copy();
-				newbp2.rightArc = a;
-				l.add(i+1, newbp2);
-				l.add(i+1, newbp1);
-			}
-		}
-		
-		return new BreakPoint[]{newbp1, newbp2};
-	}
-	
-	public Arc getArcAbove(Point p, double ly) {
- 
-		if (l.size() == 1) {
-			return l.get(0).leftArc;
-		}
-		
-		for (BreakPoint bp : l) {
-			double bp_x = bp.getPositionX(ly);
-			if (p.x > bp_x) {
-				continue;
-			} else {
-				return bp.leftArc;
-			}
-		}
-		
-		return l.get(l.size()-1).rightArc;
-	}
-
-	public Arc getLeftArc(Arc a) {
-
-		if (l.size() > 1) {
-			for (BreakPoint bp : l)
-				if (bp.rightArc == a)
-					return bp.leftArc;
-		}
-
-		return null; // a is the first arc
-	}
-
-	public Arc getRightArc(Arc a) {
-
-		if (l.size() > 1) {
-			for (BreakPoint bp : l)
-				if (bp.leftArc == a)
-					return bp.rightArc;
-		}
-
-		return null; // a is the last arc
-	}
-
-	public boolean isEmpty() {
-		return l.isEmpty();
-	}
-	
-	public List<BreakPoint> getBeachLine() {
-		return l;
-	}
-	
-	public BeachLineStatus copy() {
-		BeachLineStatus r = new BeachLineStatus();
-		
-		if (l.size() == 1) {
-			BreakPoint _bp = new BreakPoint();
-			_bp.leftArc = new Arc(l.get(0).leftArc.p);
-			r.l.add(_bp);
-		} else {
-			for (BreakPoint bp : l) {
-				BreakPoint _bp = new BreakPoint();
-				_bp.leftArc = new Arc(bp.leftArc.p);
-				_bp.rightArc = new Arc(bp.rightArc.p);
-				r.l.add(_bp);
-			}
-		}
-		
-		return r;
-	}
-	
-	public class Arc {
-		
-		Point p;
-		Event circleEvent;
-		
-		public Arc(Point p) {
-			this.p = p;
-		}
-		
-		public Arc copy() {
-			Arc a = new Arc(p);
-			return a;
-		}
-		
-		// Constants for parabola with focus p=(p.x, p.y) and directrix l : y=ly
-		public double y(double x, double ly) {
-			return (x*x - 2*p.x*x + p.x*p.x + p.y*p.y - ly*ly) / (2 * (p.y - ly));
-		}
-	}
-	
-	public class BreakPoint {
-		Arc leftArc;
-		Arc rightArc;
-		HalfEdge tracedEdge;
-		
-		public double getPositionX(double ly) {
-			double res1;
-			Point p1 = leftArc.p;
-			Point p2 = rightArc.p;
-
-			double d1 = 2 * (p1.y - ly);
-			double d2 = 2 * (p2.y - ly);
-			
-			double a = 1/d1 - 1/d2;
-			double b = (-2 * p1.x) / d1 - (-2 * p2.x) / d2;
-			double c = (p1.x*p1.x + p1.y*p1.y - ly*ly) / d1 - (p2.x*p2.x + p2.y*p2.y - ly*ly) / d2;
-
-			res1 = (-b + Math.sqrt(b*b - 4*a*c)) / (2*a);
-			
-			return res1;
-		}
-
-		@Override
-		public String toString() {
-			return "<" + leftArc.p + ", " + rightArc.p + ">";
-		}
-	}
-}
+package edu.isu.mattga;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.isu.mattga.DCEL.Face;
+import edu.isu.mattga.DCEL.HalfEdge;
+import edu.isu.mattga.VoronoiDiagram.Event;
+
+
+public class BeachLineStatus {
+
+	private List<BreakPoint> l;
+
+	// Arcs and breakpoints handed out since the last reset, reused by the next sweep
+	private List<Arc>			arcPool = new ArrayList<Arc>();
+	private List<BreakPoint>	bpPool = new ArrayList<BreakPoint>();
+	private int					arcPoolUsed, bpPoolUsed;
+
+	// Returned by splitArc and removeArc, and overwritten by the next call
+	private BreakPoint[]		split = new BreakPoint[2];
+	private BreakPoint[]		removed = new BreakPoint[3];
+
+	BeachLineHistory			history;	// Told of every arc added and removed, if set
+
+	public BeachLineStatus() {
+		l = new ArrayList<BreakPoint>();
+	}
+
+	// Empties the beach line so the next sweep reuses its arcs and breakpoints
+	public void reset() {
+		l.clear();
+		arcPoolUsed = bpPoolUsed = 0;
+	}
+
+	private Arc newArc(Point p, Face cell) {
+		if (arcPoolUsed == arcPool.size())
+			arcPool.add(new Arc(p, cell));
+		Arc a = arcPool.get(arcPoolUsed++);
+		a.p = p;
+		a.cell = cell;
+		a.circleEvent = null;
+
+		return a;
+	}
+
+	private Arc copyArc(Arc a) {
+		return newArc(a.p, a.cell);
+	}
+
+	private BreakPoint newBreakPoint(Arc leftArc, Arc rightArc) {
+		if (bpPoolUsed == bpPool.size())
+			bpPool.add(new BreakPoint(leftArc, rightArc));
+		BreakPoint bp = bpPool.get(bpPoolUsed++);
+		bp.init(leftArc, rightArc);
+
+		return bp;
+	}
+	
+	// Removes arc a, whose breakpoints met with the sweep line at ly
+	public BreakPoint[] removeArc(Arc a, double ly) {
+
+		int i = 0;
+		BreakPoint rbp = null, lbp = null;
+		for (; i < l.size()-1; i++) {
+			if (l.get(i).rightArc == a) {
+				lbp = l.get(i);
+				rbp = l.get(i+1);
+				break;
+			}
+		}
+
+		if (lbp == null)
+			return null;
+
+		BreakPoint newbp = newBreakPoint(lbp.leftArc, rbp.rightArc);
+		l.remove(i); // remove lbp
+		l.set(i, newbp); // replace rbp
+		if (history != null)
+			history.removeArc(ly, i+1);
+
+		removed[0] = lbp;
+		removed[1] = rbp;
+		removed[2] = newbp;
+		return removed;
+	}
+	
+	public void initWithArc(Point p, Face cell) {
+		
+		// Add imaginary breakpoint on the right
+		Arc a = newArc(p, cell);
+		BreakPoint bp = newBreakPoint(a, null);
+		l.add(bp);
+		if (history != null)
+			history.splitArc(p.y, -1, p);
+	
+	}
+
+	// Adds the arc of site p after the last arc, which is that of a site on the same horizontal
+	// line as p and to its left. Returns the breakpoint between them.
+	BreakPoint appendArc(Point p, Face cell) {
+		Arc a = newArc(p, cell);
+		BreakPoint last = l.get(l.size()-1);
+		BreakPoint bp;
+		if (last.rightArc == null) { // The only arc
+			bp = newBreakPoint(last.leftArc, a);
+			l.set(l.size()-1, bp);
+		} else {
+			bp = newBreakPoint(last.rightArc, a);
+			l.add(bp);
+		}
+		if (history != null)
+			history.appendArc(p.y, p);
+
+		return bp;
+	}
+	
+	// Arc a split by the new arc of site point p, whose Voronoi cell is cell
+	public BreakPoint[] splitArc(Arc a, Point p, Face cell) {
+		
+		Arc newArc = newArc(p, cell);
+		BreakPoint newbp1, newbp2;
+		int k = 0; // Index of a among the arcs
+		
+		if (l.get(0).rightArc == null) {
+			newbp1 = newBreakPoint(copyArc(a), newArc);	// these can't have a circle event
+			newbp2 = newBreakPoint(newArc, copyArc(a));	// so copy is ok
+			l.set(0, newbp1);
+			l.add(newbp2);
+		} else {
+			BreakPoint bp = l.get(0);
+			if (bp.leftArc == a) {
+				newbp1 = newBreakPoint(a, newArc);
+				newbp2 = newBreakPoint(newArc, bp.leftArc = copyArc(a));
+				l.add(0, newbp2);
+				l.add(0, newbp1);
+			} else {
+				int i = 0;
+				for (; i < l.size(); i++) {
+					bp = l.get(i);
+					if (bp.rightArc == a)
+						break;
+				}
+				newbp1 = newBreakPoint(bp.rightArc = copyArc(a), newArc);
+				newbp2 = newBreakPoint(newArc, a);
+				l.add(i+1, newbp2);
+				l.add(i+1, newbp1);
+				k = i+1;
+			}
+		}
+		if (history != null)
+			history.splitArc(p.y, k, p);
+		
+		split[0] = newbp1;
+		split[1] = newbp2;
+		return split;
+	}
+	
+	public Arc getArcAbove(Point p, double ly) {
+ 
+		if (l.get(0).rightArc == null) {
+			return l.get(0).leftArc;
+		}
+		
+		for (BreakPoint bp : l) {
+			double bp_x = bp.getPositionX(ly);
+			if (p.x > bp_x) {
+				continue;
+			} else {
+				return bp.leftArc;
+			}
+		}
+		
+		return l.get(l.size()-1).rightArc;
+	}
+
+	public Arc getLeftArc(Arc a) {
+
+		if (l.get(0).rightArc != null) {
+			for (BreakPoint bp : l)
+				if (bp.rightArc == a)
+					return bp.leftArc;
+		}
+
+		return null; // a is the first arc
+	}
+
+	public Arc getRightArc(Arc a) {
+
+		if (l.get(0).rightArc != null) {
+			for (BreakPoint bp : l)
+				if (bp.leftArc == a)
+					return bp.rightArc;
+		}
+
+		return null; // a is the last arc
+	}
+
+	public boolean isEmpty() {
+		return l.isEmpty();
+	}
+	
+	public List<BreakPoint> getBeachLine() {
+		return l;
+	}
+	
+	// Replaces the beach line with arcs of the first n sites, left to right. The arcs have no
+	// cells, so this is only for drawing.
+	void setArcs(Point[] sites, int n) {
+		reset();
+		if (n == 0)
+			return;
+
+		Arc a = newArc(sites[0], null);
+		if (n == 1)
+			l.add(newBreakPoint(a, null));
+		for (int i = 1; i < n; i++) {
+			Arc b = newArc(sites[i], null);
+			l.add(newBreakPoint(a, b));
+			a = b;
+		}
+	}
+	
+	public BeachLineStatus copy() {
+		BeachLineStatus r = new BeachLineStatus();
+		
+		if (!l.isEmpty() && l.get(0).rightArc == null) {
+			r.l.add(r.newBreakPoint(r.copyArc(l.get(0).leftArc), null));
+		} else {
+			for (BreakPoint bp : l) {
+				r.l.add(r.newBreakPoint(r.copyArc(bp.leftArc), r.copyArc(bp.rightArc)));
+			}
+		}
+		
+		return r;
+	}
+	
+	public class Arc {
+		
+		Point p;
+		Face cell;	// Voronoi cell of p
+		Event circleEvent;
+		
+		public Arc(Point p, Face cell) {
+			this.p = p;
+			this.cell = cell;
+		}
+		
+		public Arc copy() {
+			Arc a = new Arc(p, cell);
+			return a;
+		}
+		
+		// Constants for parabola with focus p=(p.x, p.y) and directrix l : y=ly
+		public double y(double x, double ly) {
+			return (x*x - 2*p.x*x + p.x*p.x + p.y*p.y - ly*ly) / (2 * (p.y - ly));
+		}
+	}
+	
+	public class BreakPoint {
+		Arc leftArc;
+		Arc rightArc;
+		HalfEdge tracedEdge; // Half-edge in the direction the breakpoint moves; rightArc's cell lies on its left
+
+		// The left site, and the right site relative to it with its squared distance. Working
+		// relative to the left site keeps the sums small, so they don't lose the digits that
+		// tell close breakpoints apart.
+		private double px, py, dx, dy, q;
+		
+		// Position at the last sweep position asked for. Everything that runs during one
+		// event asks at the same ly, so only the first query pays for the sqrt.
+		private double lastLy = Double.NaN, lastX;
+
+		public BreakPoint(Arc leftArc, Arc rightArc) {
+			init(leftArc, rightArc);
+		}
+
+		private void init(Arc leftArc, Arc rightArc) {
+			this.leftArc = leftArc;
+			this.rightArc = rightArc;
+			tracedEdge = null;
+			lastLy = Double.NaN;
+			if (rightArc == null) // imaginary breakpoint of the first arc
+				return;
+
+			px = leftArc.p.x;
+			py = leftArc.p.y;
+			dx = rightArc.p.x - px;
+			dy = rightArc.p.y - py;
+			q = dx*dx + dy*dy;
+		}
+		
+		public double getPositionX(double ly) {
+			if (ly == lastLy)
+				return lastX;
+
+			lastX = GeomKernels.breakPointX(px, py, dx, dy, q, ly);
+			lastLy = ly;
+			
+			return lastX;
+		}
+
+		@Override
+		public String toString() {
+			return "<" + leftArc.p + ", " + (rightArc != null ? rightArc.p : null) + ">";
+		}
+	}
+}
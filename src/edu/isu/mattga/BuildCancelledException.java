@@ -0,0 +1,20 @@
+package edu.isu.mattga;
+
+import java.util.concurrent.CancellationException;
+
+// Thrown by a build stopped through its CancellationToken. The build has freed what it had
+// built so far, and this tells how far that was.
+public class BuildCancelledException extends CancellationException {
+
+	private static final long serialVersionUID = 1L;
+
+	final String	stage;		// "sweep", "clipping" or "triangulation"
+	final long		done, total;	// Of the stage, in its own units
+
+	BuildCancelledException(String why, String stage, long done, long total) {
+		super("Build " + why + " in the " + stage + ", " + done + " of " + total + " done");
+		this.stage = stage;
+		this.done = done;
+		this.total = total;
+	}
+}
@@ -0,0 +1,177 @@
+package edu.isu.mattga;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+// Runs builds on an executor without letting the memory they need together go past a budget.
+// What a build needs is estimated from its number of sites. Builds wait in a queue until there
+// is room for them, smallest first, so small builds are not held up behind large ones. So that a
+// large build is not held up for ever by small ones that keep coming, once MAX_OVERTAKES builds
+// queued after it have started it goes next, and nothing else starts until it fits. A build
+// larger than the whole budget runs once nothing else is running.
+public class BuildScheduler {
+
+	// Heap taken by each record of a build, with compressed references: header, fields and
+	// padding, plus its slots in the lists that hold it
+	static final int	POINT_BYTES = 32;
+	static final int	VERTEX_BYTES = 32 + 8;
+	static final int	HALF_EDGE_BYTES = 56 + 8;
+	static final int	FACE_BYTES = 32 + 24 + 8;		// With its list of inner components
+	static final int	SITE_BYTES = POINT_BYTES + 12 + 24 + 56 + 40;	// With its adjacency list and map entry
+	static final int	EVENT_BYTES = 56 + 4;
+	static final int	MAP_ENTRY_BYTES = 40;
+
+	// A diagram of n sites has about 2n vertices, each with its own Point, 6n half-edges and n
+	// faces. About 3n events are queued in all, 2n of them circle events with their own Point.
+	static final int	DIAGRAM_BYTES = 2 * (VERTEX_BYTES + POINT_BYTES) + 6 * HALF_EDGE_BYTES + FACE_BYTES +
+							SITE_BYTES + 3 * EVENT_BYTES + 2 * POINT_BYTES;
+
+	// Its triangulation has a vertex for each site, as many half-edges and twice as many faces,
+	// and two maps from each site, one to a list of edges, while it is built
+	static final int	TRIANGULATION_BYTES = VERTEX_BYTES + 6 * HALF_EDGE_BYTES + 2 * FACE_BYTES +
+							2 * MAP_ENTRY_BYTES + 24 + 56;
+
+	// The heap a diagram measurably holds once built is about 1.5 times that of its records, and
+	// the sweep's queue and beach line and the triangulation's maps come on top while building
+	static final double	SLACK = 2;
+
+	static final int	MAX_OVERTAKES = 8;	// Most builds queued after a build that may start before it
+
+	final long							budget;			// In bytes
+	private final ExecutorService		executor;
+	private final PriorityQueue<Job>	queue = new PriorityQueue<Job>();
+	private long						reserved;		// By the builds running
+	private int							running;
+	private long						arrivals, admitted;
+	private long						totalWaitNanos, maxWaitNanos;
+
+	public BuildScheduler(long budget, ExecutorService executor) {
+		this.budget = budget;
+		this.executor = executor;
+	}
+
+	// Bytes a build of the diagram of sites, and its triangulation if asked for, takes at most
+	static long estimateBytes(long sites, boolean triangulation) {
+		return (long)(SLACK * sites * (DIAGRAM_BYTES + (triangulation ? TRIANGULATION_BYTES : 0)));
+	}
+
+	// Queues build, which needs about bytes of heap, to run once there is room for it
+	public synchronized <T> Future<T> submit(long bytes, Callable<T> build) {
+		FutureTask<T> task = new FutureTask<T>(build);
+		queue.add(new Job(task, bytes, arrivals++));
+		admit();
+		return task;
+	}
+
+	// Starts the smallest builds queued while they fit, or first the longest overtaken one,
+	// skipping any cancelled while queued
+	private synchronized void admit() {
+		for (Job job = next(); job != null; job = next()) {
+			if (running > 0 && reserved + job.bytes > budget)
+				return;
+
+			queue.remove(job);
+			for (Job o : queue)
+				if (o.order < job.order)
+					o.overtaken++;
+			long wait = System.nanoTime() - job.queuedAt;
+			totalWaitNanos += wait;
+			maxWaitNanos = Math.max(maxWaitNanos, wait);
+			admitted++;
+			reserved += job.bytes;
+			running++;
+			final Job j = job;
+			try {
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							j.task.run();
+						} finally {
+							finished(j);
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) { // Shut down
+				reserved -= job.bytes;
+				running--;
+				job.task.cancel(false);
+			}
+		}
+	}
+
+	// The build to start next: the earliest queued of those overtaken MAX_OVERTAKES times, if
+	// any, else the smallest. Drops builds cancelled while queued.
+	private Job next() {
+		Job starved = null;
+		for (Iterator<Job> it = queue.iterator(); it.hasNext(); ) {
+			Job job = it.next();
+			if (job.task.isDone())
+				it.remove();
+			else if (job.overtaken >= MAX_OVERTAKES && (starved == null || job.order < starved.order))
+				starved = job;
+		}
+
+		return (starved != null ? starved : queue.peek());
+	}
+
+	private synchronized void finished(Job job) {
+		reserved -= job.bytes;
+		running--;
+		admit();
+	}
+
+	// Builds waiting to start
+	public synchronized int queued() {
+		int n = 0;
+		for (Job job : queue)
+			if (!job.task.isDone())
+				n++;
+		return n;
+	}
+
+	public synchronized int running() {
+		return running;
+	}
+
+	public synchronized long reservedBytes() {
+		return reserved;
+	}
+
+	public synchronized long admitted() {
+		return admitted;
+	}
+
+	// Mean and longest time builds started so far waited in the queue
+	public synchronized double meanWaitMillis() {
+		return (admitted == 0 ? 0 : totalWaitNanos / 1e6 / admitted);
+	}
+
+	public synchronized double maxWaitMillis() {
+		return maxWaitNanos / 1e6;
+	}
+
+	// A queued build, ordered smallest first and then in the order queued
+	private static class Job implements Comparable<Job> {
+		final FutureTask<?>	task;
+		final long			bytes;
+		final long			order;
+		final long			queuedAt = System.nanoTime();
+		int					overtaken;		// By builds queued after it that started first
+
+		Job(FutureTask<?> task, long bytes, long order) {
+			this.task = task;
+			this.bytes = bytes;
+			this.order = order;
+		}
+
+		public int compareTo(Job o) {
+			int c = Long.compare(bytes, o.bytes);
+			return (c != 0 ? c : Long.compare(order, o.order));
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package edu.isu.mattga;
+
+// Stops a build from another thread, or once a deadline has passed. A build given a token checks
+// it every CHECK_EVERY steps of its sweep, clipping and triangulation, and gives up with a
+// BuildCancelledException telling how far it got. Interrupting the thread of the build stops it
+// too. A token is for one build at a time, as its steps are counted without locking.
+public class CancellationToken {
+
+	static final int	CHECK_EVERY = 256;		// Steps between checks, a power of two. A late sweep
+											// event can take over 100 us on a large build.
+
+	private volatile boolean	cancelled;
+	private final boolean		timed;
+	private final long			deadline;		// By System.nanoTime(), if timed
+	private int					steps;
+
+	// A token that stops its build only when cancelled
+	public CancellationToken() {
+		timed = false;
+		deadline = 0;
+	}
+
+	// A token that also stops its build once millis have passed from now
+	public CancellationToken(long millis) {
+		timed = true;
+		deadline = System.nanoTime() + millis * 1000000;
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	// Whether the build is to stop, from any thread
+	public boolean isCancelled() {
+		return cancelled || expired();
+	}
+
+	private boolean expired() {
+		return timed && System.nanoTime() - deadline >= 0;
+	}
+
+	// Counts a step of the build, which has done done of total in stage, and every CHECK_EVERY
+	// steps throws if it is to stop
+	void step(String stage, long done, long total) {
+		if ((++steps & (CHECK_EVERY - 1)) == 0)
+			check(stage, done, total);
+	}
+
+	// Throws if the build is to stop
+	void check(String stage, long done, long total) {
+		String why;
+		if (cancelled)
+			why = "cancelled";
+		else if (expired())
+			why = "timed out";
+		else if (Thread.currentThread().isInterrupted())
+			why = "interrupted";
+		else
+			return;
+		throw new BuildCancelledException(why, stage, done, total);
+	}
+}
@@ -0,0 +1,25 @@
+package edu.isu.mattga;
+
+// Walks the boundary of one Voronoi cell at a time in ccw order without building polygons.
+// Cells are numbered 1..cellCount() like the c<id> faces of the diagram, 0 stands for the
+// unbounded face outside the bounding box.
+public interface CellCursor {
+
+	public int cellCount();
+
+	// Positions the cursor on the first edge of the cell. Returns false if the cell has no boundary.
+	public boolean moveTo(int cell);
+
+	// Advances to the next edge ccw. Returns false once the walk is back at the first edge.
+	public boolean next();
+
+	// Half-edge the cursor is on. Its origin is the current vertex.
+	public int edge();
+
+	public double x();
+
+	public double y();
+
+	// Cell on the other side of the current edge
+	public int neighbor();
+}
@@ -0,0 +1,96 @@
+package edu.isu.mattga;
+
+import java.util.List;
+
+// Cell of one site as a polygon, ccw, cut out of a rectangle by the bisectors with its neighbors.
+// For building only some of the cells of a diagram from the sites near them: a cell is final once
+// no site left out of the build could cut it any further.
+class CellPolygon {
+	final long			id;
+	final double		sx, sy;		// The site as read
+	final List<Point>	neighbors;
+	double[]			xs, ys;
+	int					n;
+
+	CellPolygon(long id, double sx, double sy, List<Point> neighbors) {
+		this.id = id;
+		this.sx = sx;
+		this.sy = sy;
+		this.neighbors = neighbors;
+	}
+
+	// The rectangle cut down to the side of each neighbor's bisector nearer to s. Each cut
+	// adds at most one corner.
+	void clip(Point s, double l, double b, double r, double t) {
+		int cap = 5 + neighbors.size();
+		xs = new double[cap];
+		ys = new double[cap];
+		double[] nx = new double[cap], ny = new double[cap];
+		xs[0] = l; ys[0] = b;
+		xs[1] = r; ys[1] = b;
+		xs[2] = r; ys[2] = t;
+		xs[3] = l; ys[3] = t;
+		n = 4;
+		for (Point q : neighbors) {
+			double dx = q.x - s.x, dy = q.y - s.y, mx = (s.x + q.x) / 2, my = (s.y + q.y) / 2;
+			int m = 0;
+			for (int k = 0; k < n; k++) {
+				int k1 = (k + 1 == n ? 0 : k + 1);
+				double d0 = (xs[k] - mx) * dx + (ys[k] - my) * dy;
+				double d1 = (xs[k1] - mx) * dx + (ys[k1] - my) * dy;
+				if (d0 <= 0) {
+					nx[m] = xs[k];
+					ny[m++] = ys[k];
+				}
+				if ((d0 < 0 && d1 > 0) || (d0 > 0 && d1 < 0)) {
+					double u = d0 / (d0 - d1);
+					nx[m] = xs[k] + u * (xs[k1] - xs[k]);
+					ny[m++] = ys[k] + u * (ys[k1] - ys[k]);
+				}
+			}
+			double[] tx = xs, ty = ys;
+			xs = nx; ys = ny;
+			nx = tx; ny = ty;
+			n = m;
+		}
+	}
+
+	// Whether no site outside the known region can cut the clipped cell of s, given that all
+	// sites lie in extent. Both are left, right, bottom, top. A site closer than s to some point
+	// of the cell is closer to one of its corners, since the cell is convex, so it is enough that
+	// the circle through s around each corner holds no sites but known ones. If not, need is
+	// widened to cover those circles.
+	boolean isFinal(Point s, double[] extent, double[] known, double[] need) {
+		boolean fin = true;
+		double[] box = new double[4];
+		for (int k = 0; k < n; k++) {
+			if (!sitesAround(xs[k], ys[k], Math.hypot(xs[k] - s.x, ys[k] - s.y), extent, box))
+				continue;
+			if (box[0] < known[0] || box[1] > known[1] || box[2] < known[2] || box[3] > known[3]) {
+				fin = false;
+				need[0] = Math.min(need[0], box[0]);
+				need[1] = Math.max(need[1], box[1]);
+				need[2] = Math.min(need[2], box[2]);
+				need[3] = Math.max(need[3], box[3]);
+			}
+		}
+
+		return fin;
+	}
+
+	// Box around the part of the circle of radius r around (cx, cy) within extent, into box.
+	// Returns false if the circle misses the extent.
+	private static boolean sitesAround(double cx, double cy, double r, double[] extent, double[] box) {
+		double dx = Math.max(0, Math.max(extent[0] - cx, cx - extent[1]));
+		double dy = Math.max(0, Math.max(extent[2] - cy, cy - extent[3]));
+		if (dx*dx + dy*dy > r*r)
+			return false;
+
+		double w = Math.sqrt(r*r - dy*dy), h = Math.sqrt(r*r - dx*dx);
+		box[0] = Math.max(extent[0], cx - w);
+		box[1] = Math.min(extent[1], cx + w);
+		box[2] = Math.max(extent[2], cy - h);
+		box[3] = Math.min(extent[3], cy + h);
+		return true;
+	}
+}
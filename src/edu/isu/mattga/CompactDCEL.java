@@ -0,0 +1,101 @@
+package edu.isu.mattga;
+
+import java.util.List;
+
+import edu.isu.mattga.DCEL.Face;
+import edu.isu.mattga.DCEL.HalfEdge;
+import edu.isu.mattga.DCEL.Vertex;
+
+// Flat array copy of a Voronoi diagram DCEL. Vertices and half-edges are indices into parallel
+// primitive arrays, so a diagram with millions of cells costs a handful of arrays instead of
+// millions of objects.
+public class CompactDCEL {
+
+	double[]	vx, vy;			// Vertex coordinates
+	int[]		origin;			// Origin vertex of each half-edge
+	int[]		twin, next, prev;
+	int[]		face;			// Cell id of each half-edge, 0 for the unbounded face
+	int[]		cellEdge;		// First half-edge of each cell, -1 if it has none
+
+	public static CompactDCEL of(VoronoiDiagram vd) {
+		CompactDCEL c = new CompactDCEL();
+		List<Vertex> vertices = vd.D.vertices;
+		List<HalfEdge> edges = vd.D.edges;
+
+		c.vx = new double[vertices.size()];
+		c.vy = new double[vertices.size()];
+		for (Vertex v : vertices) {
+			c.vx[v.id-1] = v.coord.x;
+			c.vy[v.id-1] = v.coord.y;
+		}
+
+		c.origin = new int[edges.size()];
+		c.twin = new int[edges.size()];
+		c.next = new int[edges.size()];
+		c.prev = new int[edges.size()];
+		c.face = new int[edges.size()];
+		for (HalfEdge e : edges) {
+			c.origin[e.id] = e.origin.id - 1;
+			c.twin[e.id] = e.twin.id;
+			c.next[e.id] = e.next.id;
+			c.prev[e.id] = e.prev.id;
+			c.face[e.id] = e.incidentFace.id;
+		}
+
+		c.cellEdge = new int[vd.cells.length];
+		c.cellEdge[0] = -1;
+		for (int i = 1; i < vd.cells.length; i++) {
+			Face f = vd.cells[i];
+			c.cellEdge[i] = (f == null || f.outerComponent == null ? -1 : f.outerComponent.id);
+		}
+
+		return c;
+	}
+
+	public int vertexCount() {
+		return vx.length;
+	}
+
+	public int edgeCount() {
+		return origin.length;
+	}
+
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	public class Cursor implements CellCursor {
+
+		private int start, cur;
+
+		public int cellCount() {
+			return cellEdge.length - 1;
+		}
+
+		public boolean moveTo(int cell) {
+			start = cur = cellEdge[cell];
+			return cur != -1;
+		}
+
+		public boolean next() {
+			cur = next[cur];
+			return cur != start;
+		}
+
+		public int edge() {
+			return cur;
+		}
+
+		public double x() {
+			return vx[origin[cur]];
+		}
+
+		public double y() {
+			return vy[origin[cur]];
+		}
+
+		public int neighbor() {
+			return face[twin[cur]];
+		}
+	}
+}
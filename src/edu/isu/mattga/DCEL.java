@@ -1,232 +1,341 @@
-package edu.isu.mattga;
-import java.util.ArrayList;
-import java.util.List;
-
-
-public class DCEL {
-	
-	List<Vertex>	vertices;
-	List<HalfEdge>	edges;
-	List<Face>		faces;
-
-	private int vertexCount = 0;
-	
-	DCEL() {
-		vertices = new ArrayList<Vertex>();
-		edges = new ArrayList<HalfEdge>();
-		faces = new ArrayList<Face>();
-	}
-	
-	public Vertex addVertex(Point p) {
-		Vertex v = new Vertex();
-		v.coord = p;
-		vertices.add(v);
-		v.name = "v" + ++vertexCount;
-		v.id = vertexCount;
-		
-		return v;
-	}
-
-	public HalfEdge addEdge() {
-		HalfEdge e1 = new HalfEdge();
-		HalfEdge e2 = new HalfEdge();
-		e1.twin = e2;
-		e2.twin = e1;
-		edges.add(e1);
-		edges.add(e2);
-		
-		return e1;
-	}
-	
-	public HalfEdge addEdge(Vertex v1, Vertex v2) {
-		HalfEdge e1 = new HalfEdge();
-		HalfEdge e2 = new HalfEdge();
-		e1.twin = e2;
-		e1.origin = v1;
-		e1.name = String.format("e%d,%d", v1.id, v2.id);
-		e2.twin = e1;
-		e2.origin = v2;
-		e2.name = String.format("e%d,%d", v2.id, v1.id);
-		edges.add(e1);
-		edges.add(e2);
-		
-		return e1;
-	}
-	
-	public Face addFace() {
-		Face f = new Face();
-		f.innerComponents = new ArrayList<HalfEdge>();
-		faces.add(f);
-		
-		return f;
-	}
-	
-	public void setFaces() {
-		
-		for (HalfEdge e : edges) {
-			if (e.incidentFace == null) {
-				Face f = addFace();
-				HalfEdge cur = e.next;
-				e.incidentFace = f;
-				// If e is an outer edge of the boundary, set as inner edge of unbounded face
-				if (!e.origin.vorVertex && !e.next.origin.vorVertex && !f.innerComponents.contains(e) 
-					&& e.origin.coord.x != e.twin.origin.coord.x) {
-					f.innerComponents.add(e);
-					f.name = "f0";
-				}
-				else // e is any inner edge (outer edge of a face)
-					f.outerComponent = e;
-				while (cur != e) {
-					cur.incidentFace = f;
-					cur = cur.next;
-				}
-			}
-		}
-	}
-
-	// Intersect edge e with edge _e at point p
-	public HalfEdge intersectEdge(HalfEdge e, HalfEdge _e, Point p) {
-		Vertex v = addVertex(p);
-		HalfEdge e_new = new HalfEdge();
-		HalfEdge e_new_twin = new HalfEdge();
-		e_new.twin = e_new_twin;
-		e_new_twin.twin = e_new;
-		e_new.origin = v; v.incidentEdge = e_new;
-		e_new_twin.origin = e.twin.origin;
-		e_new.next = e.next; e.next.prev = e_new;
-		e.twin.prev.next = e_new_twin; e_new_twin.prev = e.twin.prev;
-		e.twin.origin = v;
-		e.next = e_new; e_new.prev = e;
-		_e.twin.origin = v;
-		_e.next = e.twin; e.twin.prev = _e;
-		_e.twin.prev = e_new_twin; e_new_twin.next = _e.twin;
-		
-		e.name = String.format("e%d,%d", e.origin.id, e.twin.origin.id);
-		e.twin.name = String.format("e%d,%d", e.twin.origin.id, e.origin.id);
-		_e.name = "e" + (_e.origin == null ? "?" : _e.origin.id) + "," + (_e.twin.origin == null ? "?" : _e.twin.origin.id);
-		_e.twin.name = "e" + (_e.twin.origin == null ? "?" : _e.twin.origin.id) + "," + (_e.origin == null ? "?" : _e.origin.id);
-		e_new.name = String.format("e%d,%d", e_new.origin.id, e_new_twin.origin.id);
-		e_new_twin.name = String.format("e%d,%d", e_new_twin.origin.id, e_new.origin.id);
-		
-		return e_new;
-	}
-	
-	public void setEdgeOrigin(HalfEdge e, Vertex v) {
-		
-		if (e.origin == null) {
-			e.origin = v;
-			v.incidentEdge = e;
-			
-			if (e.twin.origin == null) {
-				e.name = "e" + v.id + ",?";
-				e.twin.name = "e?," + v.id;
-			} else {
-				e.name = "e" + v.id + "," + e.twin.origin.id;
-				e.twin.name = "e" + e.twin.origin.id + "," + v.id;
-			}
-		} else {
-			e.twin.origin = v;
-			v.incidentEdge = e.twin;
-			
-			if (e.twin.origin == null) {
-				e.name = "e?," + v.id;
-				e.twin.name = "e" + v.id + ",?";
-			} else {
-				e.name = "e" + e.origin.id + "," + v.id;
-				e.twin.name = "e" + v.id + "," + e.origin.id;
-			}
-		}
-	}
-
-	@Override
-	public String toString() {
-		String s = "";
-
-		for (Vertex v : vertices) {
-			s += v + "\n";
-		}
-		if (!vertices.isEmpty())
-			s += "\n";
-		
-		for (Face f : faces) {
-			s += f + "\n";
-		}
-		if (!faces.isEmpty())
-			s += "\n";
-
-		for (HalfEdge e : edges) {
-			s += e + "\n";
-		}
-		
-		return s;
-	}
-	
-	public class Vertex {
-		int			id;
-		String 		name;
-		Point		coord;
-		HalfEdge	incidentEdge;
-
-		// Non-DCEL variables
-		boolean		vorVertex;
-		
-		@Override
-		public String toString() {
-			String s = String.format("%s  (%.1f, %.1f)  ", name, coord.x, coord.y);
-			s += (incidentEdge != null ?	incidentEdge.name + "  "			: "nil");
-					
-			return s;
-		}
-	}
-
-	public class HalfEdge {
-		String		name;
-		Vertex		origin;
-		HalfEdge	twin, next, prev;
-		Face		incidentFace;
-
-		// Non-DCEL variables
-		double 		slope;
-		int			orientation; // Line lies to the 1: left, 2: right, or 0: unknown of origin
-
-		@Override
-		public String toString() {
-			String s = name + "  ";
-			s += (origin != null ? 			origin.name + "  " 			: "nil  ");
-			s += (twin != null ? 			twin.name + "  " 			: "nil  ");
-			s += (incidentFace != null ? 	incidentFace.name + "  " 	: "nil  ");
-			s += (next != null ? 			next.name + "  " 			: "nil  ");
-			s += (prev != null ? 			prev.name + "  " 			: "nil  ");
-			
-			return s;
-		}
-	}
-	
-	public class Face {
-		int				id;
-		String			name;
-		HalfEdge		outerComponent;
-		List<HalfEdge>	innerComponents;
-
-		Face() {
-			innerComponents = new ArrayList<HalfEdge>();
-		}
-
-		@Override
-		public String toString() {
-			String s = name + "  ";
-			s += (outerComponent != null ? outerComponent.name + "  " : "nil  ");
-			if (innerComponents == null || innerComponents.isEmpty()) {
-				s += "nil";
-			} else {
-				s += "" + innerComponents.get(0).name;
-				for (int i = 1; i < innerComponents.size(); i++) {
-					s += "," + innerComponents.get(i).name;
-				}
-				s += "";
-			}
-			
-			return s;
-		}
-	}
-}
+package edu.isu.mattga;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+public class DCEL {
+	
+	List<Vertex>	vertices;
+	List<HalfEdge>	edges;
+	List<Face>		faces;
+
+	// Names are only built when the DCEL is printed, from these prefixes and the ids
+	String			vertexPrefix = "v", edgePrefix = "e", facePrefix = "c";
+
+	private int vertexCount = 0;
+	private int edgeCount = 0;
+
+	// Every record handed out since the last reset. They are kept by reset() and handed out
+	// again, so rebuilding a diagram of the same size allocates nothing.
+	private List<Vertex>	vertexPool = new ArrayList<Vertex>();
+	private List<HalfEdge>	edgePool = new ArrayList<HalfEdge>();
+	private List<Face>		facePool = new ArrayList<Face>();
+	private int				vertexPoolUsed, edgePoolUsed, facePoolUsed;
+	
+	DCEL() {
+		vertices = new ArrayList<Vertex>();
+		edges = new ArrayList<HalfEdge>();
+		faces = new ArrayList<Face>();
+	}
+
+	// Empties the DCEL for the next build. Records from the previous build get reused, so
+	// nothing may hold on to them.
+	public void reset() {
+		vertices.clear();
+		edges.clear();
+		faces.clear();
+		vertexCount = edgeCount = 0;
+		vertexPoolUsed = edgePoolUsed = facePoolUsed = 0;
+	}
+
+	private Vertex newVertex() {
+		if (vertexPoolUsed == vertexPool.size())
+			vertexPool.add(new Vertex());
+		Vertex v = vertexPool.get(vertexPoolUsed++);
+		v.incidentEdge = null;
+		v.vorVertex = false;
+		v.id = ++vertexCount;
+		vertices.add(v);
+
+		return v;
+	}
+
+	private HalfEdge newHalfEdge() {
+		if (edgePoolUsed == edgePool.size())
+			edgePool.add(new HalfEdge());
+		HalfEdge e = edgePool.get(edgePoolUsed++);
+		e.origin = null;
+		e.twin = e.next = e.prev = null;
+		e.incidentFace = null;
+		e.dx = e.dy = 0;
+		e.id = edgeCount++;
+
+		return e;
+	}
+	
+	// Adds a vertex at the site or point p, which is shared, not copied
+	public Vertex addVertex(Point p) {
+		Vertex v = newVertex();
+		v.coord = p;
+		v.ownsCoord = false;
+		
+		return v;
+	}
+
+	// Adds a vertex at (x, y), reusing the coordinates of a recycled vertex when possible
+	public Vertex addVertex(double x, double y) {
+		Vertex v = newVertex();
+		if (v.ownsCoord) {
+			v.coord.x = x;
+			v.coord.y = y;
+		} else {
+			v.coord = new Point(x, y);
+			v.ownsCoord = true;
+		}
+
+		return v;
+	}
+
+	public HalfEdge addEdge() {
+		HalfEdge e1 = newHalfEdge();
+		HalfEdge e2 = newHalfEdge();
+		e1.twin = e2;
+		e2.twin = e1;
+		edges.add(e1);
+		edges.add(e2);
+		
+		return e1;
+	}
+	
+	public HalfEdge addEdge(Vertex v1, Vertex v2) {
+		HalfEdge e1 = addEdge();
+		e1.origin = v1;
+		e1.twin.origin = v2;
+		
+		return e1;
+	}
+	
+	public Face addFace() {
+		if (facePoolUsed == facePool.size())
+			facePool.add(new Face());
+		Face f = facePool.get(facePoolUsed++);
+		f.id = 0;
+		f.outerComponent = null;
+		f.innerComponents.clear();
+		f.site = null;
+		faces.add(f);
+		
+		return f;
+	}
+	
+	public void setDirection(HalfEdge e, double dx, double dy) {
+		e.dx = dx;
+		e.dy = dy;
+		e.twin.dx = -dx;
+		e.twin.dy = -dy;
+	}
+
+	public void setIncidentFace(HalfEdge e, Face f) {
+		e.incidentFace = f;
+		if (f.outerComponent == null && f.innerComponents.isEmpty())
+			f.outerComponent = e;
+	}
+
+	// Intersect edge e with edge _e at point (x, y)
+	public HalfEdge intersectEdge(HalfEdge e, HalfEdge _e, double x, double y) {
+		Vertex v = addVertex(x, y);
+		HalfEdge e_new = newHalfEdge();
+		HalfEdge e_new_twin = newHalfEdge();
+		e_new.twin = e_new_twin;
+		e_new_twin.twin = e_new;
+		e_new.origin = v; v.incidentEdge = e_new;
+		e_new_twin.origin = e.twin.origin;
+		e_new.next = e.next; e.next.prev = e_new;
+		e.twin.prev.next = e_new_twin; e_new_twin.prev = e.twin.prev;
+		e.twin.origin = v;
+		e.next = e_new; e_new.prev = e;
+		_e.twin.origin = v;
+		_e.next = e.twin; e.twin.prev = _e;
+		_e.twin.prev = e_new_twin; e_new_twin.next = _e.twin;
+		e_new.incidentFace = e.incidentFace;
+		e.twin.incidentFace = _e.incidentFace;
+		e_new_twin.incidentFace = _e.twin.incidentFace;
+		
+		return e_new;
+	}
+	
+	// Collapses the edges whose two ends lie within tol of each other, merging their ends into one
+	// vertex. Vertices not joined by such an edge are never merged, however close. Returns the
+	// number of vertices removed.
+	public int weldVertices(double tol) {
+
+		Map<Vertex,Vertex> welded = new HashMap<Vertex,Vertex>();	// Each merged vertex to the one it became
+		for (HalfEdge e : edges) {
+			if (e.origin == null || e.twin.origin == null)
+				continue;
+			Vertex u = kept(welded, e.origin), v = kept(welded, e.twin.origin);
+			if (u == v)
+				continue;
+			double dx = u.coord.x - v.coord.x, dy = u.coord.y - v.coord.y;
+			if (dx*dx + dy*dy <= tol*tol)
+				welded.put(v, u);
+		}
+		if (welded.isEmpty())
+			return 0;
+
+		for (HalfEdge e : edges)
+			if (e.origin != null)
+				e.origin = kept(welded, e.origin);
+
+		// Splice out the edges that now start and end at the same vertex
+		Set<HalfEdge> collapsed = new HashSet<HalfEdge>();
+		for (HalfEdge e : edges) {
+			if (e.origin == null || e.origin != e.twin.origin || collapsed.contains(e))
+				continue;
+			for (HalfEdge _e : new HalfEdge[]{ e, e.twin }) {
+				_e.prev.next = _e.next;
+				_e.next.prev = _e.prev;
+				if (_e.incidentFace != null && _e.incidentFace.outerComponent == _e)
+					_e.incidentFace.outerComponent = _e.next;
+				collapsed.add(_e);
+			}
+		}
+
+		List<HalfEdge> _edges = new ArrayList<HalfEdge>(edges.size() - collapsed.size());
+		for (HalfEdge e : edges) {
+			if (collapsed.contains(e))
+				continue;
+			if (e.origin != null && (e.origin.incidentEdge == null || collapsed.contains(e.origin.incidentEdge)))
+				e.origin.incidentEdge = e;
+			_edges.add(e);
+		}
+		edges = _edges;
+		vertices.removeAll(welded.keySet());
+
+		// Renumber so ids stay dense
+		vertexCount = edgeCount = 0;
+		for (Vertex v : vertices)
+			v.id = ++vertexCount;
+		for (HalfEdge e : edges)
+			e.id = edgeCount++;
+
+		return welded.size();
+	}
+
+	// The vertex v was merged into, or v itself
+	private static Vertex kept(Map<Vertex,Vertex> welded, Vertex v) {
+		for (Vertex u = welded.get(v); u != null; u = welded.get(v))
+			v = u;
+		return v;
+	}
+
+	public void setEdgeOrigin(HalfEdge e, Vertex v) {
+		
+		if (e.origin == null) {
+			e.origin = v;
+			v.incidentEdge = e;
+		} else {
+			e.twin.origin = v;
+			v.incidentEdge = e.twin;
+		}
+	}
+
+	@Override
+	public String toString() {
+		String s = "";
+
+		for (Vertex v : vertices) {
+			s += v + "\n";
+		}
+		if (!vertices.isEmpty())
+			s += "\n";
+		
+		for (Face f : faces) {
+			s += f + "\n";
+		}
+		if (!faces.isEmpty())
+			s += "\n";
+
+		for (HalfEdge e : edges) {
+			s += e + "\n";
+		}
+		
+		return s;
+	}
+	
+	public class Vertex {
+		int			id;
+		Point		coord;
+		HalfEdge	incidentEdge;
+
+		// Non-DCEL variables
+		boolean		vorVertex;
+		boolean		ownsCoord;	// coord was made by addVertex(x, y) and can be reused
+		
+		public String name() {
+			return vertexPrefix + id;
+		}
+
+		@Override
+		public String toString() {
+			String s = String.format("%s  (%.1f, %.1f)  ", name(), coord.x, coord.y);
+			s += (incidentEdge != null ?	incidentEdge.name() + "  "			: "nil");
+					
+			return s;
+		}
+	}
+
+	public class HalfEdge {
+		int			id;
+		Vertex		origin;
+		HalfEdge	twin, next, prev;
+		Face		incidentFace;
+
+		// Non-DCEL variables
+		double		dx, dy;		// Direction of the edge, pointing away from origin
+
+		public String name() {
+			return edgePrefix + (origin == null ? "?" : origin.id) + "," + (twin.origin == null ? "?" : twin.origin.id);
+		}
+
+		@Override
+		public String toString() {
+			String s = name() + "  ";
+			s += (origin != null ? 			origin.name() + "  " 		: "nil  ");
+			s += (twin != null ? 			twin.name() + "  " 			: "nil  ");
+			s += (incidentFace != null ? 	incidentFace.name() + "  " 	: "nil  ");
+			s += (next != null ? 			next.name() + "  " 			: "nil  ");
+			s += (prev != null ? 			prev.name() + "  " 			: "nil  ");
+			
+			return s;
+		}
+	}
+	
+	public class Face {
+		int				id;		// 0 for the unbounded face
+		HalfEdge		outerComponent;
+		List<HalfEdge>	innerComponents;
+
+		// Non-DCEL variables
+		Point			site;		// Site of the Voronoi cell, null for any other face
+
+		Face() {
+			innerComponents = new ArrayList<HalfEdge>();
+		}
+
+		public String name() {
+			return (id == 0 ? "f0" : facePrefix + id);
+		}
+
+		@Override
+		public String toString() {
+			String s = name() + "  ";
+			s += (outerComponent != null ? outerComponent.name() + "  " : "nil  ");
+			if (innerComponents == null || innerComponents.isEmpty()) {
+				s += "nil";
+			} else {
+				s += "" + innerComponents.get(0).name();
+				for (int i = 1; i < innerComponents.size(); i++) {
+					s += "," + innerComponents.get(i).name();
+				}
+				s += "";
+			}
+			
+			return s;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package edu.isu.mattga;
+
+import edu.isu.mattga.DCEL.Face;
+import edu.isu.mattga.DCEL.HalfEdge;
+
+// CellCursor over the object DCEL of a constructed Voronoi diagram.
+public class DCELCellCursor implements CellCursor {
+
+	private Face[]		cells;
+	private HalfEdge	start, cur;
+
+	public DCELCellCursor(VoronoiDiagram vd) {
+		cells = vd.cells;
+	}
+
+	public int cellCount() {
+		return cells.length - 1;
+	}
+
+	public boolean moveTo(int cell) {
+		Face f = cells[cell];
+		start = cur = (f == null ? null : f.outerComponent);
+		return cur != null;
+	}
+
+	public boolean next() {
+		cur = cur.next;
+		return cur != start;
+	}
+
+	public int edge() {
+		return cur.id;
+	}
+
+	public HalfEdge halfEdge() {
+		return cur;
+	}
+
+	public double x() {
+		return cur.origin.coord.x;
+	}
+
+	public double y() {
+		return cur.origin.coord.y;
+	}
+
+	public int neighbor() {
+		return cur.twin.incidentFace.id;
+	}
+}
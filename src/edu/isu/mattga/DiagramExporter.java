@@ -0,0 +1,230 @@
+package edu.isu.mattga;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import edu.isu.mattga.DCEL.Face;
+import edu.isu.mattga.DCEL.HalfEdge;
+import edu.isu.mattga.DCEL.Vertex;
+
+// Writes the cells, edges and Delaunay triangles of a constructed diagram as SVG or GeoJSON.
+// Records are written straight from the DCELs as they are walked, through a fixed size buffer,
+// so memory does not grow with the diagram. Coordinates are written in full, in a decimal
+// form that reads back as the same double.
+public class DiagramExporter {
+
+	static final int	BUFFER_SIZE = 1 << 16;
+
+	private final Writer			w;
+	private final GZIPOutputStream	gz;		// null unless gzipped
+	private boolean					first = true;	// No GeoJSON feature written yet
+
+	// out is flushed when done but not closed
+	private DiagramExporter(OutputStream out, boolean gzip) throws IOException {
+		gz = (gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null);
+		w = new BufferedWriter(new OutputStreamWriter(gz != null ? gz : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+
+	private void finish() throws IOException {
+		w.flush();
+		if (gz != null)
+			gz.finish();
+	}
+
+	// SVG with the cells, the Voronoi edges between them and the triangles of dt, which may be
+	// null, as paths in groups with those ids. The y axis points up, as in the diagram.
+	public static void writeSvg(VoronoiDiagram vd, DelaunayTriangulation dt, OutputStream out, boolean gzip) throws IOException {
+		DiagramExporter x = new DiagramExporter(out, gzip);
+		x.svg(vd, dt);
+		x.finish();
+	}
+
+	// GeoJSON FeatureCollection of Polygon cells, LineString Voronoi edges and Polygon triangles
+	// of dt, which may be null. Each feature's "kind" property tells which it is.
+	public static void writeGeoJson(VoronoiDiagram vd, DelaunayTriangulation dt, OutputStream out, boolean gzip) throws IOException {
+		DiagramExporter x = new DiagramExporter(out, gzip);
+		x.geoJson(vd, dt);
+		x.finish();
+	}
+
+	private void svg(VoronoiDiagram vd, DelaunayTriangulation dt) throws IOException {
+		double left = Double.POSITIVE_INFINITY, bottom = left, right = -left, top = -left;
+		for (Vertex v : vd.D.vertices) {
+			left = Math.min(left, v.coord.x);
+			right = Math.max(right, v.coord.x);
+			bottom = Math.min(bottom, v.coord.y);
+			top = Math.max(top, v.coord.y);
+		}
+		if (left > right)
+			left = bottom = right = top = 0;
+
+		w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		w.write("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"");
+		num(left); w.write(' '); num(-top); w.write(' ');
+		num(right - left); w.write(' '); num(top - bottom);
+		w.write("\">\n<g transform=\"scale(1,-1)\" fill=\"none\" stroke-width=\"1\">\n");
+
+		w.write("<g id=\"cells\" stroke=\"#b3b3b3\">\n");
+		DCELCellCursor c = new DCELCellCursor(vd);
+		for (int i = 1; i <= c.cellCount(); i++) {
+			if (!c.moveTo(i))
+				continue;
+			w.write("<path id=\"c" + i + "\" vector-effect=\"non-scaling-stroke\" d=\"M");
+			do {
+				w.write(' '); num(c.x()); w.write(' '); num(c.y());
+			} while (c.next());
+			w.write(" Z\"/>\n");
+		}
+		w.write("</g>\n");
+
+		w.write("<g id=\"edges\" stroke=\"#999999\">\n");
+		for (HalfEdge e : vd.D.edges) {
+			if (!isVoronoiEdge(e))
+				continue;
+			w.write("<path vector-effect=\"non-scaling-stroke\" d=\"M ");
+			num(e.origin.coord.x); w.write(' '); num(e.origin.coord.y); w.write(" L ");
+			num(e.twin.origin.coord.x); w.write(' '); num(e.twin.origin.coord.y);
+			w.write("\"/>\n");
+		}
+		w.write("</g>\n");
+
+		w.write("<g id=\"triangles\" stroke=\"#0000cc\">\n");
+		if (dt != null && dt.D != null) {
+			for (Face f : dt.D.faces) {
+				if (f.id == 0 || f.outerComponent == null)
+					continue;
+				w.write("<path id=\"t" + f.id + "\" vector-effect=\"non-scaling-stroke\" d=\"M");
+				HalfEdge e = f.outerComponent;
+				do {
+					w.write(' '); num(e.origin.coord.x); w.write(' '); num(e.origin.coord.y);
+					e = e.next;
+				} while (e != f.outerComponent);
+				w.write(" Z\"/>\n");
+			}
+		}
+		w.write("</g>\n</g>\n</svg>\n");
+	}
+
+	// Starts a GeoJSON FeatureCollection of cells written one at a time with cell(), for
+	// diagrams that are made in pieces. End it with close().
+	static DiagramExporter openGeoJson(OutputStream out, boolean gzip) throws IOException {
+		DiagramExporter x = new DiagramExporter(out, gzip);
+		x.w.write("{\"type\":\"FeatureCollection\",\"features\":[");
+		return x;
+	}
+
+	// Cell of the site at (sx, sy) with the first n corners of xs and ys, ccw
+	void cell(long id, double sx, double sy, double[] xs, double[] ys, int n) throws IOException {
+		w.write(first ? "\n" : ",\n");
+		first = false;
+		w.write("{\"type\":\"Feature\",\"properties\":{\"kind\":\"cell\",\"id\":" + id + ",\"site\":");
+		position(sx, sy);
+		w.write("},\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[");
+		for (int i = 0; i < n; i++) {
+			position(xs[i], ys[i]);
+			w.write(',');
+		}
+		position(xs[0], ys[0]);
+		w.write("]]}}");
+	}
+
+	void close() throws IOException {
+		w.write("\n]}\n");
+		finish();
+	}
+
+	private void geoJson(VoronoiDiagram vd, DelaunayTriangulation dt) throws IOException {
+		w.write("{\"type\":\"FeatureCollection\",\"features\":[");
+
+		// Cells are walked ccw, which is the winding GeoJSON wants for outer rings
+		DCELCellCursor c = new DCELCellCursor(vd);
+		for (int i = 1; i <= c.cellCount(); i++) {
+			if (!c.moveTo(i))
+				continue;
+			w.write(first ? "\n" : ",\n");
+			first = false;
+			w.write("{\"type\":\"Feature\",\"properties\":{\"kind\":\"cell\",\"id\":" + i);
+			Point site = vd.cells[i].site;
+			if (site != null) {
+				w.write(",\"site\":[");
+				num(site.x); w.write(','); num(site.y);
+				w.write(']');
+			}
+			w.write("},\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[");
+			double x0 = c.x(), y0 = c.y();
+			do {
+				position(c.x(), c.y());
+				w.write(',');
+			} while (c.next());
+			position(x0, y0);
+			w.write("]]}}");
+		}
+
+		for (HalfEdge e : vd.D.edges) {
+			if (!isVoronoiEdge(e))
+				continue;
+			w.write(first ? "\n" : ",\n");
+			first = false;
+			w.write("{\"type\":\"Feature\",\"properties\":{\"kind\":\"edge\",\"cells\":[" +
+					e.incidentFace.id + "," + e.twin.incidentFace.id + "]},");
+			w.write("\"geometry\":{\"type\":\"LineString\",\"coordinates\":[");
+			position(e.origin.coord.x, e.origin.coord.y);
+			w.write(',');
+			position(e.twin.origin.coord.x, e.twin.origin.coord.y);
+			w.write("]}}");
+		}
+
+		// Vertex ids of the triangulation are the ids of the cells of their sites
+		if (dt != null && dt.D != null) {
+			for (Face f : dt.D.faces) {
+				if (f.id == 0 || f.outerComponent == null)
+					continue;
+				w.write(first ? "\n" : ",\n");
+				first = false;
+				w.write("{\"type\":\"Feature\",\"properties\":{\"kind\":\"triangle\",\"id\":" + f.id + ",\"cells\":[");
+				HalfEdge e = f.outerComponent;
+				do {
+					w.write((e == f.outerComponent ? "" : ",") + e.origin.id);
+					e = e.next;
+				} while (e != f.outerComponent);
+				w.write("]},\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[");
+				do {
+					position(e.origin.coord.x, e.origin.coord.y);
+					w.write(',');
+					e = e.next;
+				} while (e != f.outerComponent);
+				position(e.origin.coord.x, e.origin.coord.y);
+				w.write("]]}}");
+			}
+		}
+		w.write("\n]}\n");
+	}
+
+	// Edges between two cells, once per pair of twins. Edges of the bounding box are left out.
+	private static boolean isVoronoiEdge(HalfEdge e) {
+		return e.id < e.twin.id && e.origin != null && e.twin.origin != null &&
+				e.incidentFace != null && e.incidentFace.id != 0 &&
+				e.twin.incidentFace != null && e.twin.incidentFace.id != 0;
+	}
+
+	private void position(double x, double y) throws IOException {
+		w.write('[');
+		num(x);
+		w.write(',');
+		num(y);
+		w.write(']');
+	}
+
+	// Decimal that reads back as exactly v. Whole numbers drop the ".0".
+	private void num(double v) throws IOException {
+		if (v == Math.rint(v) && Math.abs(v) < 1e15)
+			w.write(Long.toString((long)v));
+		else
+			w.write(Double.toString(v));
+	}
+}
@@ -0,0 +1,210 @@
+package edu.isu.mattga;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import edu.isu.mattga.DCEL.HalfEdge;
+import edu.isu.mattga.DCEL.Vertex;
+
+// Draws a Voronoi diagram, its Delaunay triangulation and its sites into a BufferedImage with
+// Java2D instead of OpenGL, so it runs without a display (java.awt.headless=true). The image is
+// cut into tiles drawn in parallel, each with only the items that reach into it.
+public class DiagramRasterizer {
+
+	static final int	TILE_SIZE = 128;
+	static final double	MARGIN = .1;		// Room around the sites, relative to their extent
+	static final Color	BACKGROUND = new Color(.94f, .94f, .94f),
+						VD_EDGE = new Color(.7f, .7f, .7f),
+						VD_VERTEX = new Color(0, .8f, 0),
+						DT_EDGE = new Color(0, 0, .8f),
+						SITE = new Color(1f, 0, 0);
+
+	final int						width, height;
+	private final ExecutorService	pool;
+
+	public DiagramRasterizer(int width, int height, ExecutorService pool) {
+		this.width = width;
+		this.height = height;
+		this.pool = pool;
+	}
+
+	// Draws the diagram of vd fitted to its sites. dt may be null, as may its DCEL when the
+	// sites were collinear.
+	public BufferedImage render(VoronoiDiagram vd, DelaunayTriangulation dt) throws InterruptedException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		if (vd.sitePoints.isEmpty())
+			return fill(image);
+
+		double left = Double.POSITIVE_INFINITY, bottom = left, right = -left, top = -left;
+		for (Point p : vd.sitePoints) {
+			left = Math.min(left, p.x);
+			right = Math.max(right, p.x);
+			bottom = Math.min(bottom, p.y);
+			top = Math.max(top, p.y);
+		}
+		double extent = Math.max(Math.max(right - left, top - bottom), 1e-9);
+		double scale = Math.min(width, height) / (extent * (1 + 2*MARGIN));
+		double ox = (left + right) / 2 - width / 2 / scale, oy = (bottom + top) / 2 + height / 2 / scale;
+
+		final int tilesX = (width + TILE_SIZE - 1) / TILE_SIZE, tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+		final Layer[] layers = {
+			new Layer(VD_EDGE, 1, false), new Layer(DT_EDGE, 1, false),
+			new Layer(VD_VERTEX, 1.5, true), new Layer(SITE, 2, true)
+		};
+		for (HalfEdge e : vd.D.edges)
+			if (e.origin != null && e.twin.origin != null && e.id < e.twin.id) // one of each pair of twins
+				layers[0].add(e.origin.coord, e.twin.origin.coord, ox, oy, scale);
+		if (dt != null && dt.D != null)
+			for (HalfEdge e : dt.D.edges)
+				if (e.origin != null && e.twin.origin != null && e.id < e.twin.id)
+					layers[1].add(e.origin.coord, e.twin.origin.coord, ox, oy, scale);
+		for (Vertex v : vd.D.vertices)
+			if (v.vorVertex)
+				layers[2].add(v.coord, v.coord, ox, oy, scale);
+		for (Point p : vd.sitePoints)
+			layers[3].add(p, p, ox, oy, scale);
+		for (Layer l : layers)
+			l.bin(tilesX, tilesY);
+
+		final BufferedImage img = image;
+		List<Future<?>> tiles = new ArrayList<Future<?>>();
+		for (int ty = 0; ty < tilesY; ty++) {
+			for (int tx = 0; tx < tilesX; tx++) {
+				final int t = ty * tilesX + tx, x = tx * TILE_SIZE, y = ty * TILE_SIZE;
+				tiles.add(pool.submit(new Callable<Void>() {
+					public Void call() {
+						drawTile(img, layers, t, x, y);
+						return null;
+					}
+				}));
+			}
+		}
+		for (Future<?> f : tiles) {
+			try {
+				f.get();
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		return image;
+	}
+
+	public static void writePng(BufferedImage image, OutputStream out) throws IOException {
+		if (!ImageIO.write(image, "png", out))
+			throw new IOException("No PNG writer");
+	}
+
+	private BufferedImage fill(BufferedImage image) {
+		Graphics2D g = image.createGraphics();
+		g.setColor(BACKGROUND);
+		g.fillRect(0, 0, width, height);
+		g.dispose();
+
+		return image;
+	}
+
+	// Tiles share the image's pixels but not any pixel, so they can be drawn at the same time
+	private void drawTile(BufferedImage image, Layer[] layers, int t, int x, int y) {
+		int w = Math.min(TILE_SIZE, width - x), h = Math.min(TILE_SIZE, height - y);
+		Graphics2D g = image.getSubimage(x, y, w, h).createGraphics();
+		g.setColor(BACKGROUND);
+		g.fillRect(0, 0, w, h);
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+		g.translate(-x, -y);
+
+		Line2D.Double line = new Line2D.Double();
+		Ellipse2D.Double dot = new Ellipse2D.Double();
+		for (Layer l : layers) {
+			g.setColor(l.color);
+			g.setStroke(new BasicStroke((float)l.size));
+			for (int k = l.tileStart[t]; k < l.tileStart[t+1]; k++) {
+				int i = 4 * l.tileItems[k];
+				if (l.dots) {
+					dot.setFrame(l.c[i] - l.size, l.c[i+1] - l.size, 2*l.size, 2*l.size);
+					g.fill(dot);
+				} else {
+					line.setLine(l.c[i], l.c[i+1], l.c[i+2], l.c[i+3]);
+					g.draw(line);
+				}
+			}
+		}
+		g.dispose();
+	}
+
+	// Segments or dots of one color in pixel coordinates, with the items of tile t listed in
+	// tileItems from tileStart[t] to tileStart[t+1]
+	private static class Layer {
+		final Color		color;
+		final double	size;		// Line width or dot radius, in pixels
+		final boolean	dots;
+		double[]		c = new double[64];
+		int				n;
+		int[]			tileStart, tileItems;
+
+		Layer(Color color, double size, boolean dots) {
+			this.color = color;
+			this.size = size;
+			this.dots = dots;
+		}
+
+		void add(Point a, Point b, double ox, double oy, double scale) {
+			if (4*n == c.length)
+				c = Arrays.copyOf(c, 2 * c.length);
+			c[4*n] = (a.x - ox) * scale;
+			c[4*n+1] = (oy - a.y) * scale;
+			c[4*n+2] = (b.x - ox) * scale;
+			c[4*n+3] = (oy - b.y) * scale;
+			n++;
+		}
+
+		// Lists each item under every tile its bounding box, widened by its size, reaches into
+		void bin(int tilesX, int tilesY) {
+			tileStart = new int[tilesX * tilesY + 1];
+			for (int pass = 0; pass < 2; pass++) {
+				if (pass == 1) {
+					for (int t = 1; t < tileStart.length; t++)
+						tileStart[t] += tileStart[t-1];
+					tileItems = new int[tileStart[tileStart.length - 1]];
+				}
+				for (int i = 0; i < n; i++) {
+					int tx0 = tile(Math.min(c[4*i], c[4*i+2]) - size, tilesX), tx1 = tile(Math.max(c[4*i], c[4*i+2]) + size, tilesX);
+					int ty0 = tile(Math.min(c[4*i+1], c[4*i+3]) - size, tilesY), ty1 = tile(Math.max(c[4*i+1], c[4*i+3]) + size, tilesY);
+					if (tx1 < 0 || ty1 < 0 || tx0 == tilesX || ty0 == tilesY)
+						continue; // Outside the image
+					for (int ty = Math.max(ty0, 0); ty <= Math.min(ty1, tilesY - 1); ty++)
+						for (int tx = Math.max(tx0, 0); tx <= Math.min(tx1, tilesX - 1); tx++)
+							if (pass == 0)
+								tileStart[ty * tilesX + tx + 1]++;
+							else
+								tileItems[--tileStart[ty * tilesX + tx + 1]] = i;
+				}
+			}
+			// Filling counted each tile's end back down to its start, one tile late
+			System.arraycopy(tileStart, 1, tileStart, 0, tileStart.length - 1);
+			tileStart[tileStart.length - 1] = tileItems.length;
+		}
+
+		// Tile holding pixel px, or -1 or tiles when px is before or past all of them
+		private static int tile(double px, int tiles) {
+			return (int)Math.max(-1, Math.min(tiles, Math.floor(px / TILE_SIZE)));
+		}
+	}
+}
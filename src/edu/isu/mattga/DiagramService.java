@@ -0,0 +1,392 @@
+package edu.isu.mattga;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+// Builds diagrams and answers queries about them over HTTP on the loopback interface, keeping
+// each diagram built in memory until it is deleted. Each request runs on a virtual thread of
+// its own where the JDK has them, and on a thread of a pool that grows as needed otherwise.
+//
+//   POST   /diagrams?timeout=             Sites in the body, in the site file format. Builds
+//                                         their diagram and triangulation and answers its id.
+//                                         A build not done in timeout ms, from when it was asked
+//                                         for, is stopped and answered with 504.
+//   GET    /diagrams/{id}                 Number of sites
+//   DELETE /diagrams/{id}
+//   GET    /diagrams/{id}/locate?x=&y=    Cell containing (x, y)
+//   GET    /diagrams/{id}/nearest?x=&y=&k=  The k sites nearest (x, y), nearest first
+//   GET    /diagrams/{id}/svg, /geojson   Exports, gzipped if the client accepts it
+//   GET    /builds                        Builds queued and running, and how long they waited
+//
+// Builds are run by a BuildScheduler, so that uploads that come together do not run out of memory.
+public class DiagramService {
+
+	static final int	DEFAULT_PORT = 8080;
+	static final int	BACKLOG = 1024;				// Connections waiting to be accepted
+	static final int	SORT_CHUNK = 1 << 16;		// Sites sorted in memory at once when building
+	static final int	MAX_NEIGHBORS = 10000;		// Most sites a nearest query answers
+	static final long	BUILD_TIMEOUT = 5 * 60 * 1000;	// Longest a build may take, in ms, queued or not
+
+	private final HttpServer			server;
+	private final ExecutorService		executor = newExecutor();
+	private final Map<Long,Diagram>		diagrams = new ConcurrentHashMap<Long,Diagram>();
+	private final AtomicLong			nextId = new AtomicLong(1);
+	private final BuildScheduler		builds;
+
+	// Builds take at most buildBudget bytes at once
+	public DiagramService(int port, long buildBudget) throws IOException {
+		builds = new BuildScheduler(buildBudget, executor);
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+		server.createContext("/diagrams", new HttpHandler() {
+			public void handle(HttpExchange ex) throws IOException {
+				try {
+					route(ex);
+				} catch (IllegalArgumentException e) {
+					send(ex, 400, error(e.getMessage()));
+				} catch (BuildCancelledException e) {
+					send(ex, 504, error(e.getMessage()));
+				} catch (Exception e) {
+					e.printStackTrace();
+					send(ex, 500, error(e.toString()));
+				} finally {
+					ex.close();
+				}
+			}
+		});
+		server.createContext("/builds", new HttpHandler() {
+			public void handle(HttpExchange ex) throws IOException {
+				try {
+					send(ex, 200, "{\"queued\":" + builds.queued() + ",\"running\":" + builds.running() +
+							",\"reservedBytes\":" + builds.reservedBytes() + ",\"budgetBytes\":" + builds.budget +
+							",\"admitted\":" + builds.admitted() + ",\"meanWaitMs\":" + builds.meanWaitMillis() +
+							",\"maxWaitMs\":" + builds.maxWaitMillis() + "}");
+				} finally {
+					ex.close();
+				}
+			}
+		});
+		server.setExecutor(executor);
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT);
+		DiagramService service = new DiagramService(port, Runtime.getRuntime().maxMemory() / 2);
+		service.start();
+		System.out.println("Serving diagrams on http://localhost:" + service.port() + "/diagrams");
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdown();
+	}
+
+	public int port() {
+		return server.getAddress().getPort();
+	}
+
+	// Executors.newVirtualThreadPerTaskExecutor() if there is one, looked up by name so that
+	// the service still builds and runs on JDKs without virtual threads
+	static ExecutorService newExecutor() {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	private void route(HttpExchange ex) throws IOException, InterruptedException {
+		String method = ex.getRequestMethod();
+		String[] path = ex.getRequestURI().getPath().split("/");	// "", "diagrams", id, action
+		if (path.length < 2 || !path[1].equals("diagrams")) {
+			send(ex, 404, error("No such path"));
+			return;
+		}
+		if (path.length == 2) {
+			if (!method.equals("POST"))
+				throw new IllegalArgumentException("Use POST to upload sites");
+			upload(ex);
+			return;
+		}
+
+		long id;
+		try {
+			id = Long.parseLong(path[2]);
+		} catch (NumberFormatException e) {
+			send(ex, 404, error("No diagram " + path[2]));
+			return;
+		}
+		Diagram d = diagrams.get(id);
+		if (d == null || path.length > 4) {
+			send(ex, 404, error("No diagram " + path[2]));
+			return;
+		}
+
+		String action = (path.length == 4 ? path[3] : "");
+		if (method.equals("DELETE") && action.isEmpty()) {
+			diagrams.remove(id);
+			send(ex, 200, "{\"id\":" + id + "}");
+		} else if (!method.equals("GET")) {
+			throw new IllegalArgumentException("Use GET for " + (action.isEmpty() ? "diagrams" : action));
+		} else if (action.isEmpty()) {
+			send(ex, 200, "{\"id\":" + id + ",\"sites\":" + (d.vd.cells.length - 1) + "}");
+		} else if (action.equals("locate")) {
+			Map<String,String> q = query(ex.getRequestURI());
+			int c = d.locate(number(q, "x"), number(q, "y"));
+			send(ex, 200, (c == 0 ? "{\"cell\":null}" : "{\"cell\":" + c + ",\"site\":" + d.site(c) + "}"));
+		} else if (action.equals("nearest")) {
+			Map<String,String> q = query(ex.getRequestURI());
+			double x = number(q, "x"), y = number(q, "y");
+			int k = (q.containsKey("k") ? (int)number(q, "k") : 1);
+			if (k < 1 || k > MAX_NEIGHBORS)
+				throw new IllegalArgumentException("k must be from 1 to " + MAX_NEIGHBORS);
+			StringBuilder json = new StringBuilder("{\"sites\":[");
+			int[] cells = d.nearest(x, y, k);
+			for (int i = 0; i < cells.length; i++) {
+				Point s = d.vd.cells[cells[i]].site;
+				json.append(i == 0 ? "" : ",").append("{\"cell\":").append(cells[i]).append(",\"site\":").append(d.site(cells[i]))
+					.append(",\"distance\":").append(Math.hypot(s.x - x, s.y - y)).append('}');
+			}
+			send(ex, 200, json.append("]}").toString());
+		} else if (action.equals("svg") || action.equals("geojson")) {
+			boolean svg = action.equals("svg");
+			String accept = ex.getRequestHeaders().getFirst("Accept-Encoding");
+			boolean gzip = (accept != null && accept.contains("gzip"));
+			ex.getResponseHeaders().set("Content-Type", (svg ? "image/svg+xml" : "application/geo+json"));
+			if (gzip)
+				ex.getResponseHeaders().set("Content-Encoding", "gzip");
+			ex.sendResponseHeaders(200, 0);
+			OutputStream out = ex.getResponseBody();
+			if (svg)
+				DiagramExporter.writeSvg(d.vd, d.dt, out, gzip);
+			else
+				DiagramExporter.writeGeoJson(d.vd, d.dt, out, gzip);
+			out.close();
+		} else {
+			send(ex, 404, error("No action " + action));
+		}
+	}
+
+	// Builds the diagram of the uploaded sites. They go through a file and the external sort,
+	// which leaves out duplicates in far less time than setSites().
+	private void upload(HttpExchange ex) throws IOException, InterruptedException {
+		String timeout = query(ex.getRequestURI()).get("timeout");
+		final CancellationToken token = new CancellationToken(timeout == null ? BUILD_TIMEOUT :
+				Math.min(BUILD_TIMEOUT, Math.max(0, Long.parseLong(timeout))));
+		File f = File.createTempFile("sites", ".txt");
+		try {
+			InputStream in = ex.getRequestBody();
+			Files.copy(in, f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			in.close();
+
+			final SiteSorter.SortedSites sites;
+			try {
+				sites = new SiteSorter(SORT_CHUNK, executor).sort(f.getPath());
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e.getMessage());	// Not in the site file format
+			}
+			if (sites.count() == 0) {
+				sites.close();
+				throw new IllegalArgumentException("No sites");
+			}
+
+			// The build closes the sites, unless it is cancelled before it starts
+			Future<Diagram> build = builds.submit(BuildScheduler.estimateBytes(sites.count(), true), new Callable<Diagram>() {
+				public Diagram call() throws IOException {
+					try {
+						VoronoiDiagram vd = new VoronoiDiagram();
+						vd.token = token;
+						vd.build(sites);
+						DelaunayTriangulation dt = new DelaunayTriangulation();
+						dt.build(vd);
+						return new Diagram(vd, dt);
+					} finally {
+						sites.close();
+					}
+				}
+			});
+			Diagram d;
+			try {
+				d = build.get();
+			} catch (InterruptedException e) {
+				token.cancel();
+				if (build.cancel(false))
+					sites.close();
+				throw e;
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException)
+					throw (IOException)e.getCause();
+				if (e.getCause() instanceof BuildCancelledException)
+					throw (BuildCancelledException)e.getCause();
+				throw new RuntimeException(e.getCause());
+			}
+
+			VoronoiDiagram vd = d.vd;
+			long id = nextId.getAndIncrement();
+			diagrams.put(id, d);
+			ex.getResponseHeaders().set("Location", "/diagrams/" + id);
+			send(ex, 201, "{\"id\":" + id + ",\"sites\":" + (vd.cells.length - 1) + ",\"collinear\":" + vd.collinear + "}");
+		} finally {
+			f.delete();
+		}
+	}
+
+	private static Map<String,String> query(URI uri) {
+		Map<String,String> q = new HashMap<String,String>();
+		String s = uri.getRawQuery();
+		if (s == null)
+			return q;
+		for (String pair : s.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq > 0)
+				q.put(pair.substring(0, eq), pair.substring(eq + 1));
+		}
+
+		return q;
+	}
+
+	private static double number(Map<String,String> q, String name) {
+		String v = q.get(name);
+		if (v == null)
+			throw new IllegalArgumentException("Missing " + name);
+		try {
+			double d = Double.parseDouble(v);
+			if (Double.isNaN(d) || Double.isInfinite(d))
+				throw new NumberFormatException();
+			return d;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad " + name + " \"" + v + "\"");
+		}
+	}
+
+	private static String error(String message) {
+		return "{\"error\":\"" + String.valueOf(message).replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+	}
+
+	private static void send(HttpExchange ex, int status, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		ex.getResponseHeaders().set("Content-Type", "application/json");
+		ex.sendResponseHeaders(status, body.length);
+		OutputStream out = ex.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	// A built diagram, which queries only read. Sites are found by walking the triangulation from
+	// the nearest of a sample of them toward the query point.
+	private static class Diagram {
+		final VoronoiDiagram		vd;
+		final DelaunayTriangulation	dt;
+		final Map<Point,Integer>	cellOf = new HashMap<Point,Integer>();	// Of each site
+		final int[]					starts;		// Cells of about sqrt(n) sites spread out in the order built
+
+		Diagram(VoronoiDiagram vd, DelaunayTriangulation dt) {
+			this.vd = vd;
+			this.dt = dt;
+			int n = vd.cells.length - 1;
+			for (int k = 1; k <= n; k++)
+				cellOf.put(vd.cells[k].site, k);
+			int step = Math.max(1, (int)Math.sqrt(n));
+			starts = new int[(n + step - 1) / step];
+			for (int i = 0; i < starts.length; i++)
+				starts[i] = 1 + i * step;
+		}
+
+		// Cell of the site nearest (x, y). A site that is not the nearest has a Delaunay neighbor
+		// nearer than it, so walking to nearer neighbors while there are any ends at the nearest.
+		int locate(double x, double y) {
+			if (starts.length == 0)
+				return 0;
+			int best = starts[0];
+			for (int c : starts)
+				if (distance(c, x, y) < distance(best, x, y))
+					best = c;
+
+			for (boolean moved = true; moved; ) {
+				moved = false;
+				double d = distance(best, x, y);
+				for (Point q : vd.adjSites.get(vd.cells[best].site)) {
+					double dq = (q.x - x) * (q.x - x) + (q.y - y) * (q.y - y);
+					if (dq < d) {
+						d = dq;
+						best = cellOf.get(q);
+						moved = true;
+					}
+				}
+			}
+
+			return best;
+		}
+
+		// Cells of the k sites nearest (x, y), nearest first. The k nearest sites are connected in
+		// the triangulation, so they are found by growing out from the nearest, nearest first.
+		int[] nearest(final double x, final double y, int k) {
+			int first = locate(x, y);
+			if (first == 0)
+				return new int[0];
+
+			PriorityQueue<Integer> next = new PriorityQueue<Integer>(11, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					return Double.compare(distance(a, x, y), distance(b, x, y));
+				}
+			});
+			Set<Integer> seen = new HashSet<Integer>();
+			next.add(first);
+			seen.add(first);
+			int[] found = new int[Math.min(k, vd.cells.length - 1)];
+			for (int i = 0; i < found.length; i++) {
+				if (next.isEmpty()) // Only if the sites were not all connected
+					return Arrays.copyOf(found, i);
+				found[i] = next.poll();
+				List<Point> adj = vd.adjSites.get(vd.cells[found[i]].site);
+				for (Point q : adj) {
+					Integer c = cellOf.get(q);
+					if (seen.add(c))
+						next.add(c);
+				}
+			}
+
+			return found;
+		}
+
+		private double distance(int c, double x, double y) {
+			Point s = vd.cells[c].site;
+			return (s.x - x) * (s.x - x) + (s.y - y) * (s.y - y);
+		}
+
+		String site(int c) {
+			Point s = vd.cells[c].site;
+			return "[" + s.x + "," + s.y + "]";
+		}
+	}
+}
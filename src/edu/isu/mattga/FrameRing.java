@@ -0,0 +1,40 @@
+package edu.isu.mattga;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Bounded queue of frames handed from the thread that makes them to the thread that shows them,
+// without locks. The maker never waits: when the queue is full, the oldest frame is dropped to
+// make room. The taker only wants the newest frame and drops any older ones with it.
+public class FrameRing<T> {
+
+	private final AtomicReferenceArray<T>	slots;
+	private final AtomicLong				head = new AtomicLong(),	// Frames put so far
+											tail = new AtomicLong();	// Frames taken or dropped so far
+
+	public FrameRing(int capacity) {
+		slots = new AtomicReferenceArray<T>(capacity);
+	}
+
+	// Called from one thread only
+	public void offer(T frame) {
+		long h = head.get();
+		for (long t = tail.get(); h - t >= slots.length(); t = tail.get())
+			tail.compareAndSet(t, t + 1); // Drop the oldest, unless the taker just took it
+		slots.set((int)(h % slots.length()), frame);
+		head.set(h + 1);
+	}
+
+	// Newest frame put since the last call, or null if there is none. A slot is only refilled
+	// once tail has moved past it, so if tail has not moved, the frame read is the one wanted.
+	public T latest() {
+		for (;;) {
+			long t = tail.get(), h = head.get();
+			if (t == h)
+				return null;
+			T frame = slots.get((int)((h - 1) % slots.length()));
+			if (tail.compareAndSet(t, h))
+				return frame;
+		}
+	}
+}
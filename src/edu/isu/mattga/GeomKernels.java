@@ -0,0 +1,39 @@
+package edu.isu.mattga;
+
+// Geometric formulas used by the sweep and the drawing. The search over sites reads the
+// coordinates from one array per component instead of following Point references.
+final class GeomKernels {
+
+	private GeomKernels() {
+	}
+
+	// Where the parabolas of (px, py) and (px + dx, py + dy) meet, with the second on the right,
+	// for the sweep line at ly. q is dx^2 + dy^2. With l = ly - py, equating the parabolas gives
+	// dy*u^2 - 2*dx*l*u + q*l - dy*l^2 = 0 for u = x - px. Its root is taken in whichever of two
+	// equivalent forms adds terms of the same sign.
+	static double breakPointX(double px, double py, double dx, double dy, double q, double ly) {
+		double l = ly - py;
+		double s = Math.sqrt(q * l * (l - dy));
+		if (dx*l >= 0)
+			return px + (dx*l + s) / dy;
+		else
+			return px + l * (q - dy*l) / (dx*l - s);
+	}
+
+	// Index of the site nearest to (x, y), or -1 if n is 0
+	static int nearest(double[] xs, double[] ys, int n, double x, double y) {
+		int best = -1;
+		double bestD = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			double dx = xs[i] - x;
+			double dy = ys[i] - y;
+			double d = dx*dx + dy*dy;
+			if (d < bestD) {
+				bestD = d;
+				best = i;
+			}
+		}
+
+		return best;
+	}
+}
@@ -1,18 +1,26 @@
-package edu.isu.mattga;
-
-public class Main {
-	
-	public static void main(String[] args) {
-
-			VoronoiDiagram vd = new VoronoiDiagram();
-			vd.loadSites("input.txt");
-			
-			DelaunayTriangulation dt = new DelaunayTriangulation();
-
-			VDDTFrame.init(800, 800);
-			vd.constructVD();
-			dt.constructDT(vd);
-			VDDTPrintWriter.printVoronoi(vd, "voronoi.txt");
-			VDDTPrintWriter.printDelaunay(dt, "voronoi.txt");
-	}
-}
+package edu.isu.mattga;
+
+public class Main {
+	
+	public static void main(String[] args) {
+
+			VoronoiDiagram vd = new VoronoiDiagram();
+			vd.loadSites("input.txt");
+			vd.drawing = new VDDrawing();
+
+			if (args.length > 0 && args[0].equals("-progressive")) {
+				// Previews of more and more of the sites instead of the animated sweep
+				VDDTFrame.init(800, 800, vd.drawing);
+				new ProgressiveBuilder(vd.drawing).show(vd.sitePoints);
+				return;
+			}
+			
+			DelaunayTriangulation dt = new DelaunayTriangulation();
+
+			VDDTFrame.init(800, 800, vd.drawing);
+			vd.constructVD();
+			dt.constructDT(vd);
+			VDDTPrintWriter.printVoronoi(vd, "voronoi.txt");
+			VDDTPrintWriter.printDelaunay(dt, "voronoi.txt");
+	}
+}
@@ -0,0 +1,149 @@
+package edu.isu.mattga;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+// Shows the diagram and triangulation of a few of the sites at once, then of more and more of
+// them, until all are in. The sites are taken in an order in which the first few are spread
+// over all of them, so each preview looks like the whole. Diagrams are built one after another
+// on a thread of their own and handed to the drawing as each is finished. Showing other sites
+// starts on them at once, on another thread, and the previews of the old ones are dropped.
+public class ProgressiveBuilder {
+
+	static final int	FIRST_SAMPLE = 1000;	// Sites in the first preview
+	static final int	GROWTH = 4;				// How many times the sites of one preview the next has
+
+	private final VDDrawing			drawing;
+	private final ExecutorService	workers = Executors.newCachedThreadPool(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "ProgressiveBuilder");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	private final Random			rgen = new Random();
+	private Future<?>				current;
+	private CancellationToken		token;			// Of the builds for the sites being shown
+	private int						generation;		// Of the sites being shown, to tell late previews apart
+
+	// drawing must not be shown a sweep at the same time, as frames have one producer
+	public ProgressiveBuilder(VDDrawing drawing) {
+		this.drawing = drawing;
+	}
+
+	// Starts showing sites, which must be distinct, like the site points of a diagram. Anything still being built for the sites shown before is cancelled.
+	public synchronized void show(List<Point> sites) {
+		cancel();
+		final int g = generation;
+		final CancellationToken t = token = new CancellationToken();
+		final List<Point> order = stratified(sites, rgen);
+		drawing.addPoints(order);
+		if (order.isEmpty())
+			return;
+		current = workers.submit(new Runnable() {
+			public void run() {
+				try {
+					for (int m = Math.min(order.size(), FIRST_SAMPLE); ; m = (int)Math.min(order.size(), (long)m * GROWTH)) {
+						if (t.isCancelled())
+							return;
+						VoronoiDiagram vd = new VoronoiDiagram();
+						vd.token = t;
+						vd.setSites(order.subList(0, m));
+						vd.build();
+						DelaunayTriangulation dt = new DelaunayTriangulation();
+						DCEL dual = dt.build(vd);
+						if (!publish(g, vd.D, dual) || m == order.size())
+							return;
+					}
+				} catch (BuildCancelledException e) {
+					// Other sites were shown, or showing them was cancelled
+				}
+			}
+		});
+	}
+
+	// Stops building for the sites shown, leaving the last preview
+	public synchronized void cancel() {
+		generation++;
+		if (token != null)
+			token.cancel();
+		if (current != null)
+			current.cancel(true);
+		current = null;
+		token = null;
+	}
+
+	// Hands a finished preview to the drawing, unless other sites have been shown since
+	private synchronized boolean publish(int g, DCEL diagram, DCEL triangulation) {
+		if (g != generation)
+			return false;
+		drawing.delaunayTriangulation = triangulation;
+		drawing.frames.offer(SweepFrame.finished(diagram, null));
+		return true;
+	}
+
+	// The sites in an order in which each prefix is a stratified sample of them. Their extent is
+	// cut into about FIRST_SAMPLE squares, and sites are taken in rounds, a random one from each
+	// square that has any left.
+	static List<Point> stratified(List<Point> sites, Random rgen) {
+		int n = sites.size();
+		List<Point> shuffled = new ArrayList<Point>(sites);
+		Collections.shuffle(shuffled, rgen);
+		if (n <= FIRST_SAMPLE)
+			return shuffled;
+
+		double left = Double.POSITIVE_INFINITY, bottom = left, right = -left, top = -left;
+		for (Point p : sites) {
+			left = Math.min(left, p.x);
+			right = Math.max(right, p.x);
+			bottom = Math.min(bottom, p.y);
+			top = Math.max(top, p.y);
+		}
+		double w = right - left, h = top - bottom;
+		double side = Math.sqrt(Math.max(w * h, 1e-300) / FIRST_SAMPLE);
+		int gx = (int)Math.max(1, Math.min(FIRST_SAMPLE, Math.ceil(w / side)));
+		int gy = (int)Math.max(1, Math.min(FIRST_SAMPLE, Math.ceil(h / side)));
+
+		// Sites sorted by square, with a counting sort that keeps the shuffled order within each
+		int[] square = new int[n], start = new int[gx * gy + 1];
+		for (int k = 0; k < n; k++) {
+			Point p = shuffled.get(k);
+			int i = (w > 0 ? (int)Math.min(gx - 1, (p.x - left) / w * gx) : 0);
+			int j = (h > 0 ? (int)Math.min(gy - 1, (p.y - bottom) / h * gy) : 0);
+			square[k] = j * gx + i;
+			start[square[k] + 1]++;
+		}
+		for (int s = 0; s < gx * gy; s++)
+			start[s+1] += start[s];
+		Point[] bySquare = new Point[n];
+		int[] at = start.clone();
+		for (int k = 0; k < n; k++)
+			bySquare[at[square[k]]++] = shuffled.get(k);
+
+		// Squares with sites left, which drop out as they run out
+		int[] active = new int[gx * gy];
+		int nActive = 0;
+		for (int s = 0; s < gx * gy; s++)
+			if (start[s+1] > start[s])
+				active[nActive++] = s;
+		List<Point> order = new ArrayList<Point>(n);
+		for (int round = 0; nActive > 0; round++) {
+			int kept = 0;
+			for (int a = 0; a < nActive; a++) {
+				int s = active[a];
+				order.add(bySquare[start[s] + round]);
+				if (start[s] + round + 1 < start[s+1])
+					active[kept++] = s;
+			}
+			nActive = kept;
+		}
+
+		return order;
+	}
+}
@@ -0,0 +1,203 @@
+package edu.isu.mattga;
+
+import java.util.Arrays;
+
+import edu.isu.mattga.VDDrawing.Layer;
+
+// Line segments or points of one color in a quadtree, for drawing the part of a large diagram
+// that is in view. The tree is loose: each node's items may reach out half the node's size past
+// its square, so an item goes to the quadrant of its center in the smallest node that leaves room
+// for it, and short items that cross a quadrant boundary do not pile up in the nodes above. Nodes
+// with many items that cover only a few pixels are drawn as a single shade or point instead of
+// their items, so a frame costs about as much as the window has pixels.
+public class Quadtree {
+
+	static final int	LEAF_SIZE = 8;		// Most items a node keeps without splitting
+	static final int	MAX_DEPTH = 24;
+	static final double	LOD_PIXELS = 8;		// Nodes narrower than this on screen are drawn as one
+
+	final boolean		points;				// Items are points rather than segments
+	final float			r, g, b;
+
+	private float[]		x0 = new float[0], y0 = x0, x1 = x0, y1 = x0;	// Items, grouped by node once built
+	private int			n;
+
+	// Node i has the items from start[i] to start[i]+count[i], of which the first own[i] are its own
+	// and the rest are in its children child[4i..4i+3], which are -1 when empty. length[i] is the
+	// total length of the segments among them.
+	private int[]		start = new int[0], count = start, own = start, child = start;
+	private double[]	length = new double[0];
+	private int			nodes;
+	private double		left, bottom, size;	// Square of the root node
+
+	private float[]		tx0 = x0, ty0 = x0, tx1 = x0, ty1 = x0;	// Scratch for build
+	private byte[]		quadrant = new byte[0];
+
+	public Quadtree(boolean points, float r, float g, float b) {
+		this.points = points;
+		this.r = r;
+		this.g = g;
+		this.b = b;
+	}
+
+	public void clear() {
+		n = nodes = 0;
+	}
+
+	public int size() {
+		return n;
+	}
+
+	public void add(double x, double y) {
+		add(x, y, x, y);
+	}
+
+	public void add(double xa, double ya, double xb, double yb) {
+		if (n == x0.length) {
+			int c = Math.max(64, 2*n);
+			x0 = Arrays.copyOf(x0, c); y0 = Arrays.copyOf(y0, c);
+			x1 = Arrays.copyOf(x1, c); y1 = Arrays.copyOf(y1, c);
+		}
+		x0[n] = (float)xa; y0[n] = (float)ya;
+		x1[n] = (float)xb; y1[n] = (float)yb;
+		n++;
+	}
+
+	// Sorts the items added since clear() into nodes
+	public void build() {
+		nodes = 0;
+		if (n == 0)
+			return;
+
+		double l = Double.POSITIVE_INFINITY, bt = l, rt = -l, t = -l;
+		for (int i = 0; i < n; i++) {
+			l = Math.min(l, Math.min(x0[i], x1[i]));
+			rt = Math.max(rt, Math.max(x0[i], x1[i]));
+			bt = Math.min(bt, Math.min(y0[i], y1[i]));
+			t = Math.max(t, Math.max(y0[i], y1[i]));
+		}
+		left = l;
+		bottom = bt;
+		size = Math.max(Math.max(rt - l, t - bt), Double.MIN_NORMAL) * (1 + 1e-6);
+
+		if (tx0.length < n) {
+			tx0 = new float[x0.length]; ty0 = new float[x0.length];
+			tx1 = new float[x0.length]; ty1 = new float[x0.length];
+			quadrant = new byte[x0.length];
+		}
+		build(newNode(), 0, n, left, bottom, size, 0);
+	}
+
+	private int newNode() {
+		if (nodes == start.length) {
+			int c = Math.max(64, 2*nodes);
+			start = Arrays.copyOf(start, c);
+			count = Arrays.copyOf(count, c);
+			own = Arrays.copyOf(own, c);
+			length = Arrays.copyOf(length, c);
+			child = Arrays.copyOf(child, 4*c);
+		}
+		child[4*nodes] = child[4*nodes+1] = child[4*nodes+2] = child[4*nodes+3] = -1;
+
+		return nodes++;
+	}
+
+	private void build(int node, int lo, int hi, double l, double bt, double s, int depth) {
+		start[node] = lo;
+		count[node] = hi - lo;
+		if (hi - lo <= LEAF_SIZE || depth == MAX_DEPTH) {
+			own[node] = hi - lo;
+			length[node] = length(lo, hi);
+			return;
+		}
+
+		// Items longer than a quadrant stay here, ahead of those of each quadrant in turn
+		double mx = l + s/2, my = bt + s/2;
+		int[] at = new int[7];
+		for (int i = lo; i < hi; i++) {
+			if (Math.abs(x1[i] - x0[i]) > s/2 || Math.abs(y1[i] - y0[i]) > s/2)
+				quadrant[i] = 0;
+			else
+				quadrant[i] = (byte)(1 + (x0[i] + x1[i] < 2*mx ? 0 : 1) + (y0[i] + y1[i] < 2*my ? 0 : 2));
+			at[quadrant[i] + 2]++;
+		}
+		at[1] = lo;
+		for (int q = 2; q < 7; q++)
+			at[q] += at[q-1];
+		for (int i = lo; i < hi; i++) {
+			int j = at[quadrant[i] + 1]++;
+			tx0[j] = x0[i]; ty0[j] = y0[i];
+			tx1[j] = x1[i]; ty1[j] = y1[i];
+		}
+		System.arraycopy(tx0, lo, x0, lo, hi - lo);
+		System.arraycopy(ty0, lo, y0, lo, hi - lo);
+		System.arraycopy(tx1, lo, x1, lo, hi - lo);
+		System.arraycopy(ty1, lo, y1, lo, hi - lo);
+
+		// at[q+1] is now where quadrant q ends, with the node's own items as quadrant 0
+		own[node] = at[1] - lo;
+		length[node] = length(lo, at[1]);
+		for (int q = 0; q < 4; q++) {
+			int from = at[q+1], to = at[q+2];
+			if (from == to)
+				continue;
+			int c = newNode();
+			child[4*node + q] = c;
+			build(c, from, to, l + (q % 2) * s/2, bt + (q / 2) * s/2, s/2, depth + 1);
+			length[node] += length[c];
+		}
+	}
+
+	private double length(int lo, int hi) {
+		double len = 0;
+		for (int i = lo; i < hi; i++) {
+			double dx = x1[i] - x0[i], dy = y1[i] - y0[i];
+			len += Math.sqrt(dx*dx + dy*dy);
+		}
+
+		return len;
+	}
+
+	// Adds the items in the view from (vl, vb) to (vr, vt) to items, where a pixel is pixel wide.
+	// Crowded nodes below LOD_PIXELS go to shade as a square whose color goes from background
+	// to the items' color with how much of it their segments cover, or, for points, to items as
+	// one of their points.
+	public void draw(double vl, double vb, double vr, double vt, double pixel, Layer items, Layer shade, float background) {
+		if (nodes == 0)
+			return;
+
+		items.color(r, g, b);
+		draw(0, left, bottom, size, vl, vb, vr, vt, pixel, items, shade, background);
+	}
+
+	private void draw(int node, double l, double bt, double s, double vl, double vb, double vr, double vt,
+			double pixel, Layer items, Layer shade, float background) {
+		if (l - s/2 > vr || l + 1.5*s < vl || bt - s/2 > vt || bt + 1.5*s < vb)
+			return;
+
+		if (s < LOD_PIXELS * pixel && count[node] > LEAF_SIZE) {
+			if (points) {
+				items.vertex(x0[start[node]], y0[start[node]]);
+			} else {
+				float cover = (float)Math.min(1, length[node] * pixel / (s * s));
+				shade.color(background + (r - background) * cover, background + (g - background) * cover,
+						background + (b - background) * cover);
+				shade.vertex(l, bt); shade.vertex(l + s, bt); shade.vertex(l + s, bt + s);
+				shade.vertex(l, bt); shade.vertex(l + s, bt + s); shade.vertex(l, bt + s);
+			}
+			return;
+		}
+
+		for (int i = start[node]; i < start[node] + own[node]; i++) {
+			if (Math.max(x0[i], x1[i]) < vl || Math.min(x0[i], x1[i]) > vr ||
+				Math.max(y0[i], y1[i]) < vb || Math.min(y0[i], y1[i]) > vt)
+				continue;
+			items.vertex(x0[i], y0[i]);
+			if (!points)
+				items.vertex(x1[i], y1[i]);
+		}
+		for (int q = 0; q < 4; q++)
+			if (child[4*node + q] >= 0)
+				draw(child[4*node + q], l + (q % 2) * s/2, bt + (q / 2) * s/2, s/2, vl, vb, vr, vt, pixel, items, shade, background);
+	}
+}
@@ -0,0 +1,68 @@
+package edu.isu.mattga;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+// Reads the (x,y) sites of a site file one at a time, in the format loadSites() reads, without
+// holding more than a buffer of the file. Anything outside the parentheses is skipped.
+public class SiteReader implements Closeable {
+
+	private final Reader		in;
+	private final char[]		buf = new char[1 << 16];
+	private int					pos, len;
+	private final StringBuilder	num = new StringBuilder();
+
+	double						x, y;		// The last site read
+
+	public SiteReader(Reader in) {
+		this.in = in;
+	}
+
+	// Reads the next site into x and y. Returns false at the end of the file.
+	public boolean next() throws IOException {
+		int c;
+		while ((c = read()) != '(')
+			if (c == -1)
+				return false;
+		x = number(',');
+		y = number(')');
+
+		return true;
+	}
+
+	// Number up to the delimiter, with any spaces left out
+	private double number(char delimiter) throws IOException {
+		num.setLength(0);
+		int c;
+		while ((c = read()) != delimiter) {
+			if (c == -1)
+				throw new IOException("Site cut off at end of file");
+			if (!Character.isWhitespace(c))
+				num.append((char)c);
+		}
+
+		try {
+			return Double.parseDouble(num.toString());
+		} catch (NumberFormatException e) {
+			throw new IOException("Bad coordinate \"" + num + "\"", e);
+		}
+	}
+
+	private int read() throws IOException {
+		if (pos == len) {
+			len = in.read(buf, 0, buf.length);
+			pos = 0;
+			if (len <= 0) {
+				len = 0;
+				return -1;
+			}
+		}
+
+		return buf[pos++];
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+}
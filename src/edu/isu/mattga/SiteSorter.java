@@ -0,0 +1,278 @@
+package edu.isu.mattga;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+// Sorts the sites of a site file into the order the sweep takes them, for files too large to
+// sort in memory. The file is read a chunk at a time, each chunk is sorted on the pool and
+// written to a run file, and the runs are merged as they are read back. At most a few chunks
+// are held at once, however large the file.
+public class SiteSorter {
+
+	static final int	MAX_OPEN_FILES = 256;	// Most runs merged at once
+	static final int	CHUNKS_IN_MEMORY = 4;	// Most chunks being read or sorted at once
+
+	// Top to bottom, and left to right among sites with the same y
+	static final Comparator<Point>	SWEEP_ORDER = new Comparator<Point>() {
+		public int compare(Point o1, Point o2) {
+			int c = Double.compare(o2.y, o1.y);
+			return (c != 0 ? c : Double.compare(o1.x, o2.x));
+		}
+	};
+
+	final int						chunkSites;
+	private final ExecutorService	pool;
+
+	public SiteSorter(int chunkSites, ExecutorService pool) {
+		this.chunkSites = chunkSites;
+		this.pool = pool;
+	}
+
+	// Sorts the sites of siteFile. The result is read with next() and must be closed, which
+	// removes its run files.
+	public SortedSites sort(String siteFile) throws IOException, InterruptedException {
+		File dir = Files.createTempDirectory("runs").toFile();
+		boolean sorted = false;
+		try {
+			long[] count = new long[1];
+			List<File> runs = writeRuns(siteFile, dir, count);
+
+			// Merge the first runs into one until they can all be open at once
+			for (int k = 0; runs.size() > MAX_OPEN_FILES; k++) {
+				List<File> first = runs.subList(0, MAX_OPEN_FILES);
+				File run = new File(dir, "merged" + k);
+				Merge m = new Merge(first);
+				DataOutputStream out = open(run);
+				try {
+					while (m.next()) {
+						out.writeDouble(m.x);
+						out.writeDouble(m.y);
+					}
+				} finally {
+					m.close();
+					out.close();
+				}
+				for (File f : first)
+					f.delete();
+				first.clear();
+				runs.add(run);
+			}
+
+			SortedSites s = new SortedSites(dir, new Merge(runs), count[0]);
+			sorted = true;
+			return s;
+		} finally {
+			if (!sorted)
+				delete(dir);
+		}
+	}
+
+	// Writes the sites of siteFile as sorted runs of chunkSites sites, counting them in count[0]
+	private List<File> writeRuns(String siteFile, File dir, long[] count) throws IOException, InterruptedException {
+		final Semaphore chunks = new Semaphore(CHUNKS_IN_MEMORY);
+		List<Future<File>> runs = new ArrayList<Future<File>>();
+		try {
+			SiteReader r = new SiteReader(new InputStreamReader(new FileInputStream(siteFile), StandardCharsets.UTF_8));
+			try {
+				for (int n = chunkSites; n == chunkSites; ) {
+					chunks.acquire();
+					final Point[] chunk = new Point[chunkSites];
+					for (n = 0; n < chunkSites && r.next(); n++)
+						chunk[n] = new Point(r.x, r.y);
+					count[0] += n;
+					if (n == 0) {
+						chunks.release();
+						break;
+					}
+
+					final int size = n;
+					final File run = new File(dir, "run" + runs.size());
+					runs.add(pool.submit(new Callable<File>() {
+						public File call() throws IOException {
+							try {
+								Arrays.sort(chunk, 0, size, SWEEP_ORDER);
+								DataOutputStream out = open(run);
+								try {
+									for (int i = 0; i < size; i++) {
+										out.writeDouble(chunk[i].x);
+										out.writeDouble(chunk[i].y);
+									}
+								} finally {
+									out.close();
+								}
+							} finally {
+								chunks.release();
+							}
+							return run;
+						}
+					}));
+				}
+			} finally {
+				r.close();
+			}
+
+			List<File> files = new ArrayList<File>();
+			for (Future<File> f : runs)
+				files.add(f.get());
+			return files;
+		} catch (ExecutionException e) {
+			for (Future<File> f : runs)
+				f.cancel(true);
+			if (e.getCause() instanceof IOException)
+				throw (IOException)e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private static DataOutputStream open(File f) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16));
+	}
+
+	private static void delete(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null)
+			for (File f : files)
+				f.delete();
+		dir.delete();
+	}
+
+	// One run being merged, at its next site
+	private static class Run implements Comparable<Run> {
+		final DataInputStream	in;
+		double					x, y;
+
+		Run(File f) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16));
+		}
+
+		// Moves to the next site. Returns false at the end of the run.
+		boolean next() throws IOException {
+			try {
+				x = in.readDouble();
+			} catch (EOFException e) {
+				return false;
+			}
+			y = in.readDouble();
+			return true;
+		}
+
+		public int compareTo(Run o) {
+			int c = Double.compare(o.y, y);
+			return (c != 0 ? c : Double.compare(x, o.x));
+		}
+	}
+
+	// Sites of several sorted runs in one sorted stream
+	private static class Merge implements Closeable {
+		private final PriorityQueue<Run>	runs = new PriorityQueue<Run>();
+		private final List<Run>				open = new ArrayList<Run>();
+		double								x, y;
+
+		Merge(List<File> files) throws IOException {
+			try {
+				for (File f : files) {
+					Run r = new Run(f);
+					open.add(r);
+					if (r.next())
+						runs.add(r);
+				}
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+		}
+
+		boolean next() throws IOException {
+			Run r = runs.poll();
+			if (r == null)
+				return false;
+			x = r.x;
+			y = r.y;
+			if (r.next())
+				runs.add(r);
+			return true;
+		}
+
+		public void close() throws IOException {
+			IOException failed = null;
+			for (Run r : open) {
+				try {
+					r.in.close();
+				} catch (IOException e) {
+					failed = e;
+				}
+			}
+			if (failed != null)
+				throw failed;
+		}
+	}
+
+	// Sorted sites, read one at a time like a SiteReader. Duplicates are left out, as loadSites()
+	// does.
+	public static class SortedSites implements Closeable {
+
+		private final File		dir;
+		private final Merge		merge;
+		private final long		count;
+		private boolean			more;				// merge is at a site not yet taken
+		private boolean			read;				// x and y hold a site
+
+		double					x, y;				// The last site read
+
+		private SortedSites(File dir, Merge merge, long count) throws IOException {
+			this.dir = dir;
+			this.merge = merge;
+			this.count = count;
+			more = merge.next();
+		}
+
+		// Sites in the file, duplicates included
+		public long count() {
+			return count;
+		}
+
+		// Reads the next site into x and y. Returns false after the last one.
+		public boolean next() throws IOException {
+			while (more) {
+				double mx = merge.x, my = merge.y;
+				more = merge.next();
+				if (read && mx == x && my == y)
+					continue; // A duplicate
+				x = mx;
+				y = my;
+				read = true;
+				return true;
+			}
+			return false;
+		}
+
+		public void close() throws IOException {
+			try {
+				merge.close();
+			} finally {
+				delete(dir);
+			}
+		}
+	}
+}
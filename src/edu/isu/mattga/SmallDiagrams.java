@@ -0,0 +1,278 @@
+package edu.isu.mattga;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Delaunay triangulations and Voronoi vertices of many small, independent site sets at once.
+// Sites come packed in one array and the results go to one packed buffer, without the DCEL,
+// event queue, maps and names that VoronoiDiagram and DelaunayTriangulation build per diagram.
+// No Voronoi edges or cells are built: two vertices are joined by a Voronoi edge when their
+// triangles share a side, and the cell of a site is around the triangles at that site.
+public class SmallDiagrams {
+
+	static final int	BRUTE_FORCE_MAX = 8;	// Sets up to this size test every triple of sites
+	static final int	CHUNK = 256;			// Sets a worker takes at a time
+	static final double	EPS = 1e-12;			// Relative tolerance of the orientation and in-circle tests
+
+	// Triangles of set s are triStart[s]..triStart[s+1]-1. Triangle t has the corners
+	// tris[3t..3t+2], ccw and numbered within the set, and its circumcenter, which is a Voronoi
+	// vertex, at (centers[2t], centers[2t+1]). tris and centers may be longer than needed.
+	public static class Output {
+		public final int[]		triStart;
+		public final int[]		tris;
+		public final double[]	centers;
+
+		Output(int sets, int triangles) {
+			triStart = new int[sets + 1];
+			tris = new int[3 * triangles];
+			centers = new double[2 * triangles];
+		}
+	}
+
+	// Builds the sets on a pool of one thread per processor
+	public static Output build(double[] xy, int[] setStart) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			return build(xy, setStart, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	// Sites of set s are setStart[s]..setStart[s+1]-1, with site i at (xy[2i], xy[2i+1]). Sets
+	// should not repeat a site. Sets with fewer than three sites, or only collinear ones, have
+	// no triangles.
+	public static Output build(final double[] xy, final int[] setStart, ExecutorService pool) throws InterruptedException {
+		final int sets = setStart.length - 1;
+
+		// Each set gets room for the most triangles it can have, 2n - 5, and the gaps are
+		// closed once all sets are done
+		final int[] room = new int[sets + 1];
+		for (int s = 0; s < sets; s++) {
+			int n = setStart[s+1] - setStart[s];
+			room[s+1] = room[s] + (n >= 3 ? 2*n - 5 : 0);
+		}
+		final Output out = new Output(sets, room[sets]);
+		final int[] count = out.triStart; // Triangles of set s are counted in count[s+1] until the gaps are closed
+
+		final AtomicInteger next = new AtomicInteger();
+		int tasks = Math.min(Runtime.getRuntime().availableProcessors(), (sets + CHUNK - 1) / CHUNK);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < tasks; i++) {
+			futures.add(pool.submit(new Runnable() {
+				public void run() {
+					Worker w = new Worker();
+					int from;
+					while ((from = next.getAndAdd(CHUNK)) < sets) {
+						for (int s = from; s < Math.min(from + CHUNK, sets); s++)
+							count[s+1] = w.triangulate(xy, setStart[s], setStart[s+1] - setStart[s], out, room[s]);
+					}
+				}
+			}));
+		}
+		for (Future<?> f : futures) {
+			try {
+				f.get();
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		int t = 0;
+		for (int s = 0; s < sets; s++) {
+			int c = count[s+1];
+			System.arraycopy(out.tris, 3*room[s], out.tris, 3*t, 3*c);
+			System.arraycopy(out.centers, 2*room[s], out.centers, 2*t, 2*c);
+			out.triStart[s] = t;
+			t += c;
+		}
+		out.triStart[sets] = t;
+
+		return out;
+	}
+
+	// Scratch of one thread, reused for every set it triangulates
+	static class Worker {
+		double[]	x = new double[0], y = x;	// Sites of the set, moved so the first is at the origin
+		double		ox, oy;						// Where the first site was
+		double		tol;						// Orientation tolerance for the size of the set
+		long[]		done = new long[0];			// Directed edges a->b whose left triangle is known, bit a*n + b
+		int[]		stack = new int[0];			// Directed edges left to look at, as pairs of sites
+		int			n, sp;
+
+		// Triangulates the n sites starting at site first into out, from triangle at onwards.
+		// Returns the number of triangles.
+		int triangulate(double[] xy, int first, int n, Output out, int at) {
+			if (n < 3)
+				return 0;
+
+			this.n = n;
+			if (x.length < n) {
+				x = new double[n];
+				y = new double[n];
+			}
+			ox = xy[2*first];
+			oy = xy[2*first+1];
+			double extent = 0;
+			for (int i = 0; i < n; i++) {
+				x[i] = xy[2*(first+i)] - ox;
+				y[i] = xy[2*(first+i)+1] - oy;
+				extent = Math.max(extent, Math.max(Math.abs(x[i]), Math.abs(y[i])));
+			}
+			tol = EPS * extent * extent;
+
+			return (n <= BRUTE_FORCE_MAX ? bruteForce(out, at) : wrap(out, at));
+		}
+
+		// Keeps every ccw triple whose circle holds no other site
+		private int bruteForce(Output out, int at) {
+			int t = 0, max = 2*n - 5;
+			for (int i = 0; i < n; i++) {
+				for (int j = i+1; j < n; j++) {
+					for (int k = j+1; k < n && t < max; k++) {
+						double o = orient(i, j, k);
+						if (Math.abs(o) <= tol)
+							continue;
+
+						int b = (o > 0 ? j : k), c = (o > 0 ? k : j);
+						boolean empty = true;
+						for (int q = 0; q < n && empty; q++)
+							if (q != i && q != j && q != k && inCircle(i, b, c, q))
+								empty = false;
+						if (empty)
+							emit(i, b, c, out, at + t++);
+					}
+				}
+			}
+
+			return t;
+		}
+
+		// Gift wrapping: starting from site 0 and its nearest neighbour, which are always
+		// Delaunay neighbours, finds the triangle left of each directed edge in turn. Its apex
+		// is the site left of the edge whose circle through the edge holds no other such site.
+		private int wrap(Output out, int at) {
+			int words = (n*n + 63) / 64;
+			if (done.length < words)
+				done = new long[words];
+			else
+				Arrays.fill(done, 0, words, 0);
+			if (stack.length < 8*n)
+				stack = new int[8*n];
+			sp = 0;
+
+			int nn = -1;
+			double best = Double.POSITIVE_INFINITY;
+			for (int q = 1; q < n; q++) {
+				double d = x[q]*x[q] + y[q]*y[q];
+				if (d > 0 && d < best) {
+					best = d;
+					nn = q;
+				}
+			}
+			if (nn < 0)
+				return 0;
+			push(0, nn);
+			push(nn, 0);
+
+			int t = 0, max = 2*n - 5;
+			while (sp > 0 && t < max) {
+				int b = stack[--sp], a = stack[--sp];
+				if (isDone(a, b))
+					continue;
+
+				int c = -1;
+				for (int q = 0; q < n; q++) {
+					if (q == a || q == b || orient(a, b, q) <= tol)
+						continue;
+					if (c < 0 || inCircle(a, b, c, q))
+						c = q;
+				}
+				setDone(a, b);
+				if (c < 0)
+					continue; // a->b is on the convex hull
+
+				setDone(b, c);
+				setDone(c, a);
+				emit(a, b, c, out, at + t++);
+				if (!isDone(c, b))
+					push(c, b);
+				if (!isDone(a, c))
+					push(a, c);
+			}
+
+			return t;
+		}
+
+		private void push(int a, int b) {
+			stack[sp++] = a;
+			stack[sp++] = b;
+		}
+
+		private boolean isDone(int a, int b) {
+			int bit = a*n + b;
+			return (done[bit >>> 6] & (1L << bit)) != 0;
+		}
+
+		private void setDone(int a, int b) {
+			int bit = a*n + b;
+			done[bit >>> 6] |= 1L << bit;
+		}
+
+		// Twice the signed area of abc, positive if ccw
+		private double orient(int a, int b, int c) {
+			return (x[b] - x[a])*(y[c] - y[a]) - (y[b] - y[a])*(x[c] - x[a]);
+		}
+
+		// Checks if d lies inside the circle through the ccw triangle abc
+		private boolean inCircle(int a, int b, int c, int d) {
+			double adx = x[a] - x[d], ady = y[a] - y[d];
+			double bdx = x[b] - x[d], bdy = y[b] - y[d];
+			double cdx = x[c] - x[d], cdy = y[c] - y[d];
+			double ad = adx*adx + ady*ady, bd = bdx*bdx + bdy*bdy, cd = cdx*cdx + cdy*cdy;
+			double ka = bdx*cdy - bdy*cdx;
+			double kb = cdx*ady - cdy*adx;
+			double kc = adx*bdy - ady*bdx;
+			double det = ad*ka + bd*kb + cd*kc;
+			if (Math.abs(det) > EPS * (ad*Math.abs(ka) + bd*Math.abs(kb) + cd*Math.abs(kc)))
+				return det > 0;
+
+			// Cocircular. Decide as if each site were lifted onto the paraboloid a little higher
+			// than the next one, so the lowest numbered of the four sites decides. This keeps
+			// the answers consistent with each other and the triangles from overlapping.
+			double kd = -(ka + kb + kc);
+			int ia = a, ib = b, ic = c, id = d;
+			for (int r = 0; r < 4; r++) {
+				int m = Math.min(Math.min(ia, ib), Math.min(ic, id));
+				double k = (m == ia ? ka : m == ib ? kb : m == ic ? kc : kd);
+				if (k != 0)
+					return k > 0;
+				if (m == ia)		ia = Integer.MAX_VALUE;
+				else if (m == ib)	ib = Integer.MAX_VALUE;
+				else if (m == ic)	ic = Integer.MAX_VALUE;
+				else				id = Integer.MAX_VALUE;
+			}
+
+			return false;
+		}
+
+		private void emit(int a, int b, int c, Output out, int t) {
+			out.tris[3*t] = a;
+			out.tris[3*t+1] = b;
+			out.tris[3*t+2] = c;
+
+			double bx = x[b] - x[a], by = y[b] - y[a];
+			double cx = x[c] - x[a], cy = y[c] - y[a];
+			double g = 2 * (bx*cy - by*cx);
+			double b2 = bx*bx + by*by, c2 = cx*cx + cy*cy;
+			out.centers[2*t] = ox + x[a] + (cy*b2 - by*c2) / g;
+			out.centers[2*t+1] = oy + y[a] + (bx*c2 - cx*b2) / g;
+		}
+	}
+}
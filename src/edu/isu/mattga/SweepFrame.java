@@ -0,0 +1,94 @@
+package edu.isu.mattga;
+
+import java.util.List;
+
+import edu.isu.mattga.BeachLineStatus.BreakPoint;
+import edu.isu.mattga.DCEL.HalfEdge;
+import edu.isu.mattga.DCEL.Vertex;
+
+// What the sweep looked like after one event, or the diagram once it is finished, copied out of
+// the beach line and the DCEL so the render thread can draw it while the sweep goes on changing
+// them, or starts over.
+public class SweepFrame {
+
+	final double	sweepY;		// NaN leaves the sweep line where it was
+	final Point[]	arcs;		// Sites of the beach line arcs, left to right
+
+	// Finished Voronoi vertices and other vertices, such as the corners of the bounding box, as
+	// x, y, finished edges as x0, y0, x1, y1, and edges with one end as x, y, dx, dy, going from
+	// (x, y) toward (x + dx, y + dy) and beyond
+	final float[]	vertices, corners, edges, rays;
+
+	final BeachLineHistory.Snapshot	history;	// Of the sweep so far, null if it is not kept
+
+	private SweepFrame(double sweepY, Point[] arcs, DCEL D, BeachLineHistory history) {
+		this.sweepY = sweepY;
+		this.arcs = arcs;
+		this.history = (history != null ? history.snapshot() : null);
+
+		int nv = 0, nc = 0, ne = 0, nr = 0;
+		for (Vertex v : D.vertices) {
+			if (v.vorVertex)
+				nv++;
+			else
+				nc++;
+		}
+		for (HalfEdge e : D.edges) {
+			if (e.origin != null && e.twin.origin != null && e.id < e.twin.id)
+				ne++;
+			else if (e.origin != null && e.twin.origin == null)
+				nr++;
+		}
+
+		vertices = new float[2*nv];
+		corners = new float[2*nc];
+		edges = new float[4*ne];
+		rays = new float[4*nr];
+		nv = nc = ne = nr = 0;
+		for (Vertex v : D.vertices) {
+			if (v.vorVertex) {
+				vertices[nv++] = (float)v.coord.x;
+				vertices[nv++] = (float)v.coord.y;
+			} else {
+				corners[nc++] = (float)v.coord.x;
+				corners[nc++] = (float)v.coord.y;
+			}
+		}
+		for (HalfEdge e : D.edges) {
+			if (e.origin != null && e.twin.origin != null && e.id < e.twin.id) {
+				edges[ne++] = (float)e.origin.coord.x;
+				edges[ne++] = (float)e.origin.coord.y;
+				edges[ne++] = (float)e.twin.origin.coord.x;
+				edges[ne++] = (float)e.twin.origin.coord.y;
+			} else if (e.origin != null && e.twin.origin == null) {
+				rays[nr++] = (float)e.origin.coord.x;
+				rays[nr++] = (float)e.origin.coord.y;
+				rays[nr++] = (float)e.dx;
+				rays[nr++] = (float)e.dy;
+			}
+		}
+	}
+
+	// The sweep at y, with beach line T and the diagram so far in D
+	static SweepFrame of(double y, BeachLineStatus T, DCEL D) {
+		List<BreakPoint> l = T.getBeachLine();
+		Point[] arcs;
+		if (l.isEmpty()) {
+			arcs = new Point[0];
+		} else if (l.get(0).rightArc == null) {
+			arcs = new Point[]{ l.get(0).leftArc.p };
+		} else {
+			arcs = new Point[l.size() + 1];
+			arcs[0] = l.get(0).leftArc.p;
+			for (int i = 0; i < l.size(); i++)
+				arcs[i+1] = l.get(i).rightArc.p;
+		}
+
+		return new SweepFrame(y, arcs, D, T.history);
+	}
+
+	// The finished diagram D, with the history of its sweep if it was kept
+	static SweepFrame finished(DCEL D, BeachLineHistory history) {
+		return new SweepFrame(Double.NaN, new Point[0], D, history);
+	}
+}
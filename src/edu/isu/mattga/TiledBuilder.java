@@ -0,0 +1,478 @@
+package edu.isu.mattga;
+
+import java.awt.geom.Point2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import edu.isu.mattga.DCEL.Face;
+
+// Builds the Voronoi cells of a site file too large to hold in memory, a tile at a time. The
+// sites are first sorted into tile files on disk, cut into columns and then each column into
+// rows at quantiles of a sample of the sites, so tiles hold about as many sites however the
+// sites are spread. Each tile is then built with the sweep from its own sites and those in a
+// halo around it, and of its cells only those that no site past the halo could change are kept.
+// The rest are built again with the sites they could still be changed by, found from their
+// corners, in smaller groups if they need too many together. Tiles are built in parallel, as
+// many at a time as the memory budget allows, and their cells are written as a GeoJSON
+// FeatureCollection as each tile finishes. A cell that alone needs more than the whole budget
+// fails the build. One build runs at a time.
+public class TiledBuilder {
+
+	static final int		MAX_OPEN_FILES = 256;	// Most tile files written at once, and most tiles per side
+	static final double		MARGIN = .1;			// Room around the sites where cells are cut off, relative to their extent
+	static final double		FIRST_HALO = 4;			// Width of the first halo, in mean site spacings
+	static final int		SAMPLE = 1 << 16;		// Most sites sampled to cut columns, or the rows of a column
+
+	final int						sitesPerTile;
+	final long						memoryBudget;	// In bytes
+	private final ExecutorService	pool;
+	private final Semaphore			memory;			// Budget left, in KB
+	private final int				memoryKB;
+
+	// Set up by bucket() for the current build
+	private File					dir;			// Tile files
+	private double					left, bottom, right, top;	// Extent of the sites
+	private double					clipLeft, clipBottom, clipRight, clipTop;	// Where cells are cut off
+	private double[]				xCuts;			// Left edge of each column but the first
+	private double[][]				yCuts;			// Bottom edge of each row but the first, by column
+	private long[][]				counts;			// Sites in each tile, by column and row
+	private DiagramExporter			out;
+
+	// Each thread reuses its diagram from one tile to the next
+	private final ThreadLocal<VoronoiDiagram>	diagrams = new ThreadLocal<VoronoiDiagram>() {
+		protected VoronoiDiagram initialValue() {
+			return new VoronoiDiagram();
+		}
+	};
+
+	public TiledBuilder(int sitesPerTile, long memoryBudget, ExecutorService pool) {
+		if (BuildScheduler.estimateBytes(sitesPerTile, false) > memoryBudget)
+			throw new IllegalArgumentException("Tiles of " + sitesPerTile + " sites need more than the memory budget of " + memoryBudget + " bytes");
+		this.sitesPerTile = sitesPerTile;
+		this.memoryBudget = memoryBudget;
+		this.pool = pool;
+		memoryKB = (int)Math.min(Integer.MAX_VALUE, (memoryBudget + 1023) / 1024);
+		memory = new Semaphore(memoryKB);
+	}
+
+	// Writes the cells of the sites in siteFile to os, each with the index of its site in the
+	// file as its id. Cells on the outside are cut off a little past the sites.
+	public void build(String siteFile, OutputStream os, boolean gzip) throws IOException, InterruptedException {
+		dir = Files.createTempDirectory("tiles").toFile();
+		try {
+			out = DiagramExporter.openGeoJson(os, gzip);
+			if (bucket(siteFile))
+				buildTiles();
+			out.close();
+		} finally {
+			File[] files = dir.listFiles();
+			if (files != null)
+				for (File f : files)
+					f.delete();
+			dir.delete();
+		}
+	}
+
+	private void buildTiles() throws IOException, InterruptedException {
+		List<Future<Void>> tiles = new ArrayList<Future<Void>>();
+		for (int i = 0; i < counts.length; i++) {
+			for (int j = 0; j < counts[i].length; j++) {
+				final int ti = i, tj = j;
+				tiles.add(pool.submit(new Callable<Void>() {
+					public Void call() throws IOException, InterruptedException {
+						buildTile(ti, tj);
+						return null;
+					}
+				}));
+			}
+		}
+
+		try {
+			for (Future<Void> f : tiles)
+				f.get();
+		} catch (ExecutionException e) {
+			for (Future<Void> f : tiles)
+				f.cancel(true);
+			if (e.getCause() instanceof IOException)
+				throw (IOException)e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	// Sorts the sites of siteFile into tile files of about sitesPerTile sites each. Returns
+	// false if there are none.
+	private boolean bucket(String siteFile) throws IOException {
+		long n = 0;
+		left = bottom = Double.POSITIVE_INFINITY;
+		right = top = Double.NEGATIVE_INFINITY;
+		Random rgen = new Random(0); // Seeded, so a file is always cut into the same tiles
+		double[] sx = new double[SAMPLE], sy = new double[SAMPLE];
+		SiteReader r = new SiteReader(new InputStreamReader(new FileInputStream(siteFile), StandardCharsets.UTF_8));
+		try {
+			for (; r.next(); n++) {
+				left = Math.min(left, r.x);
+				right = Math.max(right, r.x);
+				bottom = Math.min(bottom, r.y);
+				top = Math.max(top, r.y);
+				long k = (n < SAMPLE ? n : (long)(rgen.nextDouble() * (n + 1)));
+				if (k < SAMPLE) {
+					sx[(int)k] = r.x;
+					sy[(int)k] = r.y;
+				}
+			}
+		} finally {
+			r.close();
+		}
+		if (n == 0)
+			return false;
+
+		double extent = Math.max(Math.max(right - left, top - bottom), 1e-9);
+		clipLeft = left - MARGIN * extent;
+		clipRight = right + MARGIN * extent;
+		clipBottom = bottom - MARGIN * extent;
+		clipTop = top + MARGIN * extent;
+
+		// Tiles as square as the bulk of the sites allows, leaving out the outermost tenth on
+		// each side. The columns are written to files, which are then cut into rows.
+		int m = (int)Math.min(n, SAMPLE);
+		Arrays.sort(sx, 0, m);
+		Arrays.sort(sy, 0, m);
+		long tiles = (n + sitesPerTile - 1) / sitesPerTile;
+		double aspect = Math.max(sx[m*9/10] - sx[m/10], extent * 1e-3) / Math.max(sy[m*9/10] - sy[m/10], extent * 1e-3);
+		int tilesX = (int)Math.max(1, Math.min(Math.min(MAX_OPEN_FILES, tiles), Math.round(Math.sqrt(tiles * aspect))));
+		xCuts = quantiles(sx, m, tilesX);
+		yCuts = new double[tilesX][];
+		counts = new long[tilesX][];
+
+		long[] columnCounts = new long[tilesX];
+		DataOutputStream[] columns = new DataOutputStream[tilesX];
+		r = new SiteReader(new InputStreamReader(new FileInputStream(siteFile), StandardCharsets.UTF_8));
+		try {
+			for (int i = 0; i < tilesX; i++)
+				columns[i] = open(new File(dir, "column" + i));
+			for (long id = 0; r.next(); id++) {
+				int i = column(r.x);
+				columns[i].writeDouble(r.x);
+				columns[i].writeDouble(r.y);
+				columns[i].writeLong(id);
+				columnCounts[i]++;
+			}
+		} finally {
+			r.close();
+			close(columns);
+		}
+
+		for (int i = 0; i < tilesX; i++) {
+			File column = new File(dir, "column" + i);
+			int tilesY = (int)Math.max(1, Math.min(MAX_OPEN_FILES, (columnCounts[i] + sitesPerTile - 1) / sitesPerTile));
+			yCuts[i] = (tilesY > 1 ? quantiles(sampleY(column, rgen, sy), (int)Math.min(columnCounts[i], SAMPLE), tilesY) : new double[0]);
+			counts[i] = new long[tilesY];
+
+			DataOutputStream[] rows = new DataOutputStream[tilesY];
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(column), 1 << 16));
+			try {
+				for (int j = 0; j < tilesY; j++)
+					rows[j] = open(tileFile(i, j));
+				for (;;) {
+					double x, y;
+					long id;
+					try {
+						x = in.readDouble();
+					} catch (EOFException e) {
+						break;
+					}
+					y = in.readDouble();
+					id = in.readLong();
+					int j = row(i, y);
+					rows[j].writeDouble(x);
+					rows[j].writeDouble(y);
+					rows[j].writeLong(id);
+					counts[i][j]++;
+				}
+			} finally {
+				in.close();
+				close(rows);
+			}
+			column.delete();
+		}
+
+		return true;
+	}
+
+	// Fills sample with the y of up to SAMPLE sites of a column file, chosen at random, sorted
+	private static double[] sampleY(File column, Random rgen, double[] sample) throws IOException {
+		long n = 0;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(column), 1 << 16));
+		try {
+			for (;; n++) {
+				try {
+					in.readDouble();
+				} catch (EOFException e) {
+					break;
+				}
+				double y = in.readDouble();
+				in.readLong();
+				long k = (n < SAMPLE ? n : (long)(rgen.nextDouble() * (n + 1)));
+				if (k < SAMPLE)
+					sample[(int)k] = y;
+			}
+		} finally {
+			in.close();
+		}
+		Arrays.sort(sample, 0, (int)Math.min(n, SAMPLE));
+
+		return sample;
+	}
+
+	// Where to cut the first m entries of sorted into parts of the same size
+	private static double[] quantiles(double[] sorted, int m, int parts) {
+		double[] cuts = new double[parts - 1];
+		for (int k = 1; k < parts; k++)
+			cuts[k-1] = sorted[(int)((long)k * m / parts)];
+
+		return cuts;
+	}
+
+	private static DataOutputStream open(File f) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16));
+	}
+
+	private static void close(DataOutputStream[] streams) throws IOException {
+		IOException failed = null;
+		for (DataOutputStream s : streams) {
+			try {
+				if (s != null)
+					s.close();
+			} catch (IOException e) {
+				failed = e;
+			}
+		}
+		if (failed != null)
+			throw failed;
+	}
+
+	private File tileFile(int i, int j) {
+		return new File(dir, "tile" + i + "_" + j);
+	}
+
+	private int column(double x) {
+		return countUpTo(xCuts, x);
+	}
+
+	private int row(int i, double y) {
+		return countUpTo(yCuts[i], y);
+	}
+
+	// Number of cuts at or below v, which is the index of the part v falls in
+	private static int countUpTo(double[] cuts, double v) {
+		int lo = 0, hi = cuts.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (cuts[mid] <= v)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+
+		return lo;
+	}
+
+	// Builds tile (i, j) with a halo, then again with the sites its unfinished cells need until
+	// all its cells are final. Throws IllegalStateException if a single cell needs more sites
+	// than the memory budget allows.
+	private void buildTile(int i, int j) throws IOException, InterruptedException {
+		int n = (int)counts[i][j];
+		if (n == 0)
+			return;
+
+		// The tile reaches as far as its sites do
+		double x0 = Double.POSITIVE_INFINITY, x1 = Double.NEGATIVE_INFINITY, y0 = x0, y1 = x1;
+		double[] xs = new double[n], ys = new double[n];
+		long[] ids = new long[n];
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(tileFile(i, j)), 1 << 16));
+		try {
+			for (int k = 0; k < n; k++) {
+				xs[k] = in.readDouble();
+				ys[k] = in.readDouble();
+				ids[k] = in.readLong();
+				x0 = Math.min(x0, xs[k]);
+				x1 = Math.max(x1, xs[k]);
+				y0 = Math.min(y0, ys[k]);
+				y1 = Math.max(y1, ys[k]);
+			}
+		} finally {
+			in.close();
+		}
+
+		double tw = x1 - x0, th = y1 - y0;
+		double spacing = Math.sqrt(tw * th / n);
+		if (!(spacing > 0))
+			spacing = Math.max(Math.max(tw, th), clipRight - clipLeft) / n;
+		int[] qs = new int[n];
+		for (int q = 0; q < n; q++)
+			qs[q] = q;
+		finish(i, j, xs, ys, ids, qs, 0, n, FIRST_HALO * spacing);
+	}
+
+	// Builds the cells of the tile's sites qs[from..to), first with the sites within halo of them.
+	// Cells that together need more sites than the memory budget allows, such as those beside a
+	// far outlier, are split in two along the longer side of their extent and finished apart.
+	private void finish(int i, int j, double[] xs, double[] ys, long[] ids, int[] qs, int from, int to, double halo)
+			throws IOException, InterruptedException {
+		double[] known = { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };	// left, right, bottom, top
+		for (int k = from; k < to; k++) {
+			known[0] = Math.min(known[0], xs[qs[k]] - halo);
+			known[1] = Math.max(known[1], xs[qs[k]] + halo);
+			known[2] = Math.min(known[2], ys[qs[k]] - halo);
+			known[3] = Math.max(known[3], ys[qs[k]] + halo);
+		}
+		double firstHalo = halo;
+		while (from < to) {
+			List<Point> sites = gather(known);
+			long bytes = BuildScheduler.estimateBytes(sites.size(), false);
+			if (bytes > memoryBudget) {
+				if (to - from == 1)
+					throw new IllegalStateException("Tile (" + i + ", " + j + ") has a cell that needs " + sites.size() + " sites, about " + bytes +
+							" bytes, more than the memory budget of " + memoryBudget + " bytes. Use a larger budget.");
+				int mid = split(xs, ys, qs, from, to);
+				finish(i, j, xs, ys, ids, qs, from, mid, firstHalo);
+				finish(i, j, xs, ys, ids, qs, mid, to, firstHalo);
+				return;
+			}
+			int kilobytes = (int)((bytes + 1023) / 1024);
+
+			double[] need = known.clone();
+			List<CellPolygon> cells;
+			memory.acquire(kilobytes);
+			try {
+				VoronoiDiagram vd = diagrams.get();
+				vd.setSites(sites);
+				vd.build();
+				cells = finalCells(vd, xs, ys, ids, qs, from, to, known, need);
+			} finally {
+				memory.release(kilobytes);
+			}
+
+			synchronized (out) {
+				for (CellPolygon c : cells)
+					if (c.n >= 3)
+						out.cell(c.id, c.sx, c.sy, c.xs, c.ys, c.n);
+			}
+			from += cells.size();
+
+			// The cells left can only shrink, so the sites they need are in need. Should
+			// rounding leave that no wider than what was known, widen it anyway.
+			if (from < to && Arrays.equals(need, known)) {
+				halo *= 2;
+				need[0] -= halo;
+				need[1] += halo;
+				need[2] -= halo;
+				need[3] += halo;
+			}
+			known = need;
+		}
+	}
+
+	// Sorts qs[from..to) by x or y, whichever the sites spread wider along, and returns the middle
+	private static int split(final double[] xs, final double[] ys, int[] qs, int from, int to) {
+		double x0 = Double.POSITIVE_INFINITY, x1 = Double.NEGATIVE_INFINITY, y0 = x0, y1 = x1;
+		Integer[] order = new Integer[to - from];
+		for (int k = from; k < to; k++) {
+			x0 = Math.min(x0, xs[qs[k]]);
+			x1 = Math.max(x1, xs[qs[k]]);
+			y0 = Math.min(y0, ys[qs[k]]);
+			y1 = Math.max(y1, ys[qs[k]]);
+			order[k - from] = qs[k];
+		}
+		final double[] by = (x1 - x0 >= y1 - y0 ? xs : ys);
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(by[a], by[b]);
+			}
+		});
+		for (int k = from; k < to; k++)
+			qs[k] = order[k - from];
+
+		return (from + to) >>> 1;
+	}
+
+	// Sites that lie in the known region, from the tiles it overlaps
+	private List<Point> gather(double[] known) throws IOException {
+		List<Point> sites = new ArrayList<Point>();
+		for (int a = column(known[0]); a <= column(known[1]); a++) {
+			for (int b = row(a, known[2]); b <= row(a, known[3]); b++) {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(tileFile(a, b)), 1 << 16));
+				try {
+					for (long k = counts[a][b]; k > 0; k--) {
+						double x = in.readDouble(), y = in.readDouble();
+						in.readLong();
+						if (x >= known[0] && x <= known[1] && y >= known[2] && y <= known[3])
+							sites.add(new Point(x, y));
+					}
+				} finally {
+					in.close();
+				}
+			}
+		}
+
+		return sites;
+	}
+
+	// Cells of the tile's sites qs[from..to) that no site outside the known region can change,
+	// whose sites are then moved to the front of the range. need is widened to cover what the
+	// others need.
+	private List<CellPolygon> finalCells(VoronoiDiagram vd, double[] xs, double[] ys, long[] ids, int[] qs, int from, int to,
+			double[] known, double[] need) {
+		Map<Point2D.Double,Face> bySite = new HashMap<Point2D.Double,Face>();
+		for (int k = 1; k < vd.cells.length; k++)
+			bySite.put(siteKey(vd.cells[k].site.x, vd.cells[k].site.y), vd.cells[k]);
+
+		List<CellPolygon> cells = new ArrayList<CellPolygon>();
+		double[] extent = { left, right, bottom, top };
+		for (int k = from; k < to; k++) {
+			int q = qs[k];
+			Face f = bySite.get(siteKey(xs[q], ys[q])); // A duplicate shares the cell of the site kept
+
+			CellPolygon c = new CellPolygon(ids[q], xs[q], ys[q], vd.adjSites.get(f.site));
+			c.clip(f.site, clipLeft, clipBottom, clipRight, clipTop);
+			if (c.isFinal(f.site, extent, known, need)) {
+				qs[k] = qs[from + cells.size()];
+				qs[from + cells.size()] = q;
+				cells.add(c);
+			}
+		}
+
+		return cells;
+	}
+
+	// Key of the cell of the site at (x, y) in a map by site. Adding 0 makes -0 and 0 the same
+	// key, as they are the same site to the sweep.
+	static Point2D.Double siteKey(double x, double y) {
+		return new Point2D.Double(x + 0.0, y + 0.0);
+	}
+}
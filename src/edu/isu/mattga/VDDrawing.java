@@ -1,292 +1,466 @@
-package edu.isu.mattga;
-
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.TreeMap;
-
-import com.jogamp.opengl.GL;
-import com.jogamp.opengl.GL2;
-import com.jogamp.opengl.glu.GLU;
-
-import edu.isu.mattga.BeachLineStatus.BreakPoint;
-import edu.isu.mattga.DCEL.HalfEdge;
-import edu.isu.mattga.DCEL.Vertex;
-
-public class VDDrawing {
-	private static int 					WIN_WIDTH;
-	private static int 					WIN_HEIGHT;
-	private static final double			CURVE_INTERVAL = .01;		// Plot segments every .01 length when drawing curves
-	private static final double 		WIN_MULTIPLIER = 3.;		// Multiplier for window size
-
-	public static List<float[]>			points;						// Site points
-	public static List<Point>			testPoints = new ArrayList<Point>();					
-	public static DCEL					voronoiDiagram;						
-	public static DCEL					delaunayTriangulation;				
-	public static List<BreakPoint>		beachLine;
-	public static double				sweepLinePos = Float.NaN;	// y-position of sweep line
-	public static double				minX, minY, maxX, maxY;
-	public static boolean				showDT = true, showVD = true;
-	public static Map<Double,List<BreakPoint>>	beachLines = new TreeMap<Double,List<BreakPoint>>();
-	
-    protected static void setup( GL2 gl2, int width, int height ) {
-
-    	WIN_WIDTH = width;
-    	WIN_HEIGHT = height;
-    	
-    	gl2.glClearColor(.94f, .94f, .94f, .94f);
-    	
-        gl2.glMatrixMode( GL2.GL_PROJECTION );
-        gl2.glLoadIdentity();
-
-        // coordinate system oriented in window based on min and max x/y values of sites
-        GLU glu = new GLU();
-        glu.gluOrtho2D( minX * WIN_MULTIPLIER, maxX * WIN_MULTIPLIER, minY * WIN_MULTIPLIER, maxY * WIN_MULTIPLIER);
-
-        gl2.glMatrixMode( GL2.GL_MODELVIEW );
-        gl2.glLoadIdentity();
-
-        gl2.glViewport( 0, 0, WIN_WIDTH, WIN_HEIGHT );
-    }
-
-    protected static void render( GL2 gl2, int width, int height ) {
-    	
-        gl2.glClear( GL.GL_COLOR_BUFFER_BIT );
-
-    	gl2.glPointSize(2);
-    	gl2.glBegin(GL.GL_POINTS);
-    	gl2.glColor3f(0, 0, 0);
-    	gl2.glVertex2f(0, 0);
-    	gl2.glPointSize(4);
-    	for (Point p : testPoints) {
-    		gl2.glColor3f(0, 0, .8f);
-    		gl2.glVertex2f((float)p.x, (float)p.y);
-    	}
-    	gl2.glEnd();
-    	
-        
-    	// draw voronoi diagram
-    	if (showVD && voronoiDiagram != null) {
-    		gl2.glPointSize(4);
-    		gl2.glBegin(GL.GL_POINTS);
-    		for (Vertex v : voronoiDiagram.vertices) {
-    			if (v.vorVertex)
-    				gl2.glColor3f(0, .8f, 0);
-    			else
-    				gl2.glColor3f(0, .4f, 0);
-    			gl2.glVertex2f((float)v.coord.x, (float)v.coord.y);
-    		}
-    		gl2.glEnd();
-
-    		gl2.glBegin(GL.GL_LINES);
-    		for (HalfEdge e : voronoiDiagram.edges) {
-    			if (e.origin != null && e.twin.origin != null) {
-    				gl2.glColor3f(.7f, .7f, .7f);
-    				gl2.glVertex2f((float)e.origin.coord.x, (float)e.origin.coord.y);
-    				gl2.glVertex2f((float)e.twin.origin.coord.x, (float)e.twin.origin.coord.y);
-    			} else if (e.origin != null && e.twin.origin == null) {
-    				if (e.orientation == 2) { // From origin to right bound
-    					gl2.glColor3f(.7f, .7f, .7f);
-    					double dy = e.slope * ((maxX * WIN_MULTIPLIER) - e.origin.coord.x);
-    					if (Double.isFinite(dy)) {
-    						gl2.glVertex2f((float)e.origin.coord.x, (float)e.origin.coord.y);
-    						gl2.glVertex2f((float)(maxX * WIN_MULTIPLIER), (float)(e.origin.coord.y + dy));
-    					}
-    				} else if (e.orientation == 1) { // From origin to left bound
-    					gl2.glColor3f(.7f, .7f, .7f);
-    					double dy = e.slope * ((minX * WIN_MULTIPLIER) - e.origin.coord.x);
-    					if (Double.isFinite(dy)) {
-    						gl2.glVertex2f((float)e.origin.coord.x, (float)e.origin.coord.y);
-    						gl2.glVertex2f((float)(minX * WIN_MULTIPLIER), (float)(e.origin.coord.y + dy));
-    					}
-    				}
-    			} else if (e.origin == null && e.twin.origin != null) {
-    				if (e.orientation == 2) { // From twin origin to right bound
-    					gl2.glColor3f(.7f, .7f, .7f);
-    					double dy = e.slope * ((maxX * WIN_MULTIPLIER) - e.twin.origin.coord.x);
-    					if (Double.isFinite(dy)) {
-    						gl2.glVertex2f((float)e.twin.origin.coord.x, (float)e.twin.origin.coord.y);
-    						gl2.glVertex2f((float)(maxX * WIN_MULTIPLIER), (float)(e.twin.origin.coord.y + dy));
-    					}
-    				} else if (e.orientation == 1) { // From twin origin to left bound
-    					gl2.glColor3f(.7f, .7f, .7f);
-    					double dy = e.slope * ((minX * WIN_MULTIPLIER) - e.twin.origin.coord.x);
-    					if (Double.isFinite(dy)) {
-    						gl2.glVertex2f((float)e.twin.origin.coord.x, (float)e.twin.origin.coord.y);
-    						gl2.glVertex2f((float)(minX * WIN_MULTIPLIER), (float)(e.twin.origin.coord.y + dy));
-    					}
-    				}
-    			}
-    		}
-        	gl2.glEnd();
-        }
-    	
-    	// draw delaunay triangulation
-    	if (showDT && delaunayTriangulation != null) {
-    		gl2.glBegin(GL.GL_LINES);
-    		for (HalfEdge e : delaunayTriangulation.edges) {
-    			if (e.origin != null && e.twin.origin != null) {
-    				gl2.glColor3f(0, 0, .8f);
-    				gl2.glVertex2f((float)e.origin.coord.x, (float)e.origin.coord.y);
-    				gl2.glVertex2f((float)e.twin.origin.coord.x, (float)e.twin.origin.coord.y);
-    			}
-    		}
-        	gl2.glEnd();
-        }
-        
-        // draw site points
-        if (points != null) {
-        	gl2.glPointSize(4);
-        	gl2.glBegin(GL.GL_POINTS);
-        	for (float[] p : points) {
-        		gl2.glColor3f(1, 0, 0);
-        		gl2.glVertex2f((float)p[0], (float)p[1]);
-        	}
-        	gl2.glEnd();
-        }
-        
-        // draw sweep line
-        if (sweepLinePos != Float.NaN) {  
-        	gl2.glBegin(GL.GL_LINES);
-    		gl2.glColor3f(0, 0, .8f);
-        	gl2.glVertex2f((float)(minX * WIN_MULTIPLIER), (float)sweepLinePos);
-        	gl2.glVertex2f((float)(maxX * WIN_MULTIPLIER), (float)sweepLinePos);
-        	gl2.glEnd();
-        }
-        
-        // draw beach line
-        gl2.glBegin(GL.GL_LINES);
-    	gl2.glColor3f(.3f, .3f, .3f);
-        if (beachLine != null && beachLine.size() > 1) {
-        	double x, y, bp_i_x, bp_i1_x;
-        	
-        	// draw first arc
-        	BreakPoint bp_i1, bp_i = beachLine.get(0);
-        	bp_i_x = bp_i.getPositionX(sweepLinePos);
-        	if (!Double.isFinite(bp_i_x)) // One of the arcs adjacent to bp_i is a vertical line
-        		if (bp_i.rightArc.p.y == sweepLinePos)
-        			bp_i_x = bp_i.rightArc.p.x; // It is the right arc
-        		else
-        			bp_i_x = bp_i.leftArc.p.x; // It is the left arc
-        	
-        	x = minX * WIN_MULTIPLIER;
-        	y = bp_i.leftArc.y(x, sweepLinePos);
-    		gl2.glVertex2f((float)x, (float)y); // draw initial line start point
-        	for(; x < bp_i_x; x+= CURVE_INTERVAL) {
-        		y = bp_i.leftArc.y(x, sweepLinePos);
-        		gl2.glVertex2f((float)x, (float)y); // draw line end point
-        		gl2.glVertex2f((float)x, (float)y); // draw next line start point
-        	}
-        	x = bp_i_x;
-        	y = bp_i.leftArc.y(x, sweepLinePos);
-        	gl2.glVertex2f((float)x, (float)y); // draw final line end point
-        		
-
-        	// draw the arcs in between
-        	for (int i = 0; i < beachLine.size()-1; i++) {
-        		bp_i = beachLine.get(i);
-        		bp_i1 = beachLine.get(i+1);
-        		bp_i_x = bp_i.getPositionX(sweepLinePos);
-            	if (!Double.isFinite(bp_i_x)) // One of the arcs adjacent to bp_i is a vertical line
-            		if (bp_i.rightArc.p.y == sweepLinePos)
-            			bp_i_x = bp_i.rightArc.p.x; // It is the right arc
-            		else
-            			bp_i_x = bp_i.leftArc.p.x; // It is the left arc
-        		bp_i1_x = bp_i1.getPositionX(sweepLinePos);
-            	if (!Double.isFinite(bp_i1_x)) // One of the arcs adjacent to bp_i is a vertical line
-            		if (bp_i1.rightArc.p.y == sweepLinePos)
-            			bp_i1_x = bp_i1.rightArc.p.x; // It is the right arc
-            		else
-            			bp_i1_x = bp_i1.leftArc.p.x; // It is the left arc
-            	
-            	if (bp_i_x == bp_i1_x) { // arc is a vertical line
-        			gl2.glVertex2f((float)bp_i_x, (float)sweepLinePos);
-        			gl2.glVertex2f((float)bp_i_x, (float)bp_i.leftArc.y(bp_i_x, sweepLinePos));
-            	} else {
-            		x = bp_i_x;
-            		y = bp_i.rightArc.y(x, sweepLinePos);
-            		gl2.glVertex2f((float)x, (float)y); // draw initial line start point
-            		for(; x < bp_i1_x; x += CURVE_INTERVAL) {
-            			y = bp_i.rightArc.y(x, sweepLinePos);
-            			gl2.glVertex2f((float)x, (float)y); // draw line end point
-            			gl2.glVertex2f((float)x, (float)y); // draw next line start point
-            		}
-            		x = bp_i1_x;
-            		y = bp_i.rightArc.y(x, sweepLinePos);
-            		gl2.glVertex2f((float)x, (float)y); // draw initial line start point
-            	}
-        	}
-
-        	// draw last arc
-        	bp_i = beachLine.get(beachLine.size()-1);
-        	bp_i_x = bp_i.getPositionX(sweepLinePos);
-        	if (!Double.isFinite(bp_i_x)) // One of the arcs adjacent to bp_i is a vertical line
-        		if (bp_i.rightArc.p.y == sweepLinePos)
-        			bp_i_x = bp_i.rightArc.p.x; // It is the right arc
-        		else
-        			bp_i_x = bp_i.leftArc.p.x; // It is the left arc
-        	
-        	x = bp_i_x;
-        	y = bp_i.leftArc.y(x, sweepLinePos);
-    		gl2.glVertex2f((float)x, (float)y); // draw initial line start point
-        	for(; x < maxX * WIN_MULTIPLIER; x += CURVE_INTERVAL) {
-        		y = bp_i.rightArc.y(x, sweepLinePos);
-        		gl2.glVertex2f((float)x, (float)y); // draw line end point
-        		gl2.glVertex2f((float)x, (float)y); // draw next line start point
-        	}
-        	x = maxX * WIN_MULTIPLIER;
-        	y = bp_i.leftArc.y(x, sweepLinePos);
-    		gl2.glVertex2f((float)x, (float)y); // draw initial line start point
-    		
-        } else if (beachLine != null && beachLine.size() == 1) {
-        	// draw the only arc
-        	double y;
-        	BreakPoint bp_i = beachLine.get(0);
-        	if (bp_i.leftArc.p.y != sweepLinePos)
-        		for(double x = minX * WIN_MULTIPLIER; x < maxX * WIN_MULTIPLIER; x = x + CURVE_INTERVAL) {
-        			y = bp_i.leftArc.y(x, sweepLinePos);
-        			gl2.glVertex2f((float)x, (float)y);
-        		}
-        }
-        
-        gl2.glEnd();
-    }
-    
-	private static void setBeachLine(double y) {
-    	Iterator<Entry<Double, List<BreakPoint>>> it = beachLines.entrySet().iterator();
-    	while (it.hasNext()) {
-    		Map.Entry<Double,List<BreakPoint>> bl = it.next();
-    		beachLine = bl.getValue();
-    		if (y < bl.getKey())
-    			return;
-    	}
-    }
-    
-    protected static void addPoints(List<Point> ps) {
-    	points = new ArrayList<float[]>();
-    	for (Point p : ps) {
-    		points.add(new float[]{(float)p.x, (float)p.y});
-
-    		if (p.x > maxX)
-    			maxX = p.x;
-    		if (p.y > maxY)
-    			maxY = p.y;
-    		if (p.x < minX)
-    			minX = p.x;
-    		if (p.y < minY)
-    			minY = p.y;
-    	}
-    }
-    
-    public static void setSweepLine(int y) {
-    	double a = 1 - ((double)y / WIN_HEIGHT); 
-    	a *= Math.abs(maxY*WIN_MULTIPLIER) + Math.abs(minY*WIN_MULTIPLIER);
-    	a -= Math.abs(minY*WIN_MULTIPLIER);
-    	
-    	sweepLinePos = a;
-    	//System.out.println(sweepLinePos);
-    	setBeachLine(sweepLinePos);
-    }
-}
+package edu.isu.mattga;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.glu.GLU;
+
+import edu.isu.mattga.BeachLineStatus.Arc;
+import edu.isu.mattga.BeachLineStatus.BreakPoint;
+import edu.isu.mattga.DCEL.HalfEdge;
+
+// What one window shows of one diagram: its sites, Voronoi diagram, Delaunay triangulation and
+// sweep, and the view of them. A diagram shows itself in the VDDrawing set on it, if any, so
+// diagrams built at the same time each have their own.
+public class VDDrawing {
+	private int							WIN_WIDTH;
+	private int							WIN_HEIGHT;
+	private static final double			CURVE_TOLERANCE = .25;		// Furthest a curve strays from its segments, in pixels
+	private static final double			WIN_MULTIPLIER = 3.;		// Multiplier for window size
+	private static final float			BACKGROUND = .94f;
+
+	public List<float[]>				points;						// Site points
+	public List<Point>					testPoints = new ArrayList<Point>();					
+	public DCEL							delaunayTriangulation;		// Not changed once set
+	public List<BreakPoint>				beachLine;
+	public double						sweepLinePos = Float.NaN;	// y-position of sweep line
+	public double						minX, minY, maxX, maxY;
+	private double						viewLeft, viewRight, viewBottom, viewTop;	// Visible part of the plane
+	private boolean						viewChanged = true;
+	public boolean						showDT = true, showVD = true;
+	public BeachLineHistory				beachLines = new BeachLineHistory();	// Beach lines of the last sweep, kept by the sweep thread
+	public FrameRing<SweepFrame>		frames = new FrameRing<SweepFrame>(4);	// Published by the sweep thread
+	private SweepFrame					frame;						// Last frame taken from frames
+	private BeachLineStatus				frameLine = new BeachLineStatus();	// Beach line of frame, or of the history at the sweep line
+	private int							frameEvents = -1;			// Events of the history in frameLine, -1 if it is frame's own
+
+	// Input from the event thread, merged until the next frame applies it. The view change moves
+	// the left and bottom edges by pendingX and pendingY times the view's size and scales the
+	// size by pendingScale.
+	private static final int			NO_SWEEP = Integer.MIN_VALUE;
+	private final Object				inputLock = new Object();
+	private int							pendingSweep = NO_SWEEP;	// Window y of the last scrub
+	private double						pendingX, pendingY, pendingScale = 1;
+
+	// The diagram, triangulation and sites are indexed by quadtrees, which are only filled again
+	// after invalidate(). What they have in view is kept in buffer objects until the view
+	// changes. The sweep line and beach line change every frame.
+	private volatile boolean			dirty = true;
+	private Quadtree					vorVertexTree = new Quadtree(true, 0, .8f, 0),
+										boxVertexTree = new Quadtree(true, 0, .4f, 0),
+										vdEdgeTree = new Quadtree(false, .7f, .7f, .7f),
+										dtEdgeTree = new Quadtree(false, 0, 0, .8f),
+										siteTree = new Quadtree(true, 1, 0, 0);
+	private Layer						vdVertices = new Layer(GL.GL_POINTS, GL.GL_STATIC_DRAW, 4),
+										vdEdges = new Layer(GL.GL_LINES, GL.GL_STATIC_DRAW, 1),
+										vdShade = new Layer(GL.GL_TRIANGLES, GL.GL_STATIC_DRAW, 1),
+										dtEdges = new Layer(GL.GL_LINES, GL.GL_STATIC_DRAW, 1),
+										dtShade = new Layer(GL.GL_TRIANGLES, GL.GL_STATIC_DRAW, 1),
+										sites = new Layer(GL.GL_POINTS, GL.GL_STATIC_DRAW, 4),
+										sweep = new Layer(GL.GL_LINES, GL.GL_DYNAMIC_DRAW, 1);
+	
+    protected void setup( GL2 gl2, int width, int height ) {
+
+    	WIN_WIDTH = width;
+    	WIN_HEIGHT = height;
+    	
+    	gl2.glClearColor(BACKGROUND, BACKGROUND, BACKGROUND, BACKGROUND);
+    	
+        // coordinate system oriented in window based on min and max x/y values of sites
+        viewLeft = minX * WIN_MULTIPLIER;
+        viewRight = maxX * WIN_MULTIPLIER;
+        viewBottom = minY * WIN_MULTIPLIER;
+        viewTop = maxY * WIN_MULTIPLIER;
+        project(gl2);
+
+        gl2.glViewport( 0, 0, WIN_WIDTH, WIN_HEIGHT );
+    }
+
+    private void project( GL2 gl2 ) {
+        gl2.glMatrixMode( GL2.GL_PROJECTION );
+        gl2.glLoadIdentity();
+
+        GLU glu = new GLU();
+        glu.gluOrtho2D( viewLeft, viewRight, viewBottom, viewTop);
+
+        gl2.glMatrixMode( GL2.GL_MODELVIEW );
+        gl2.glLoadIdentity();
+        viewChanged = true;
+    }
+
+    // Zooms in by factor, or out if it is below 1, keeping the point under pixel (x, y) in place.
+    // Like pan and setSweepLine, it only takes effect with the next frame.
+    public void zoom(int x, int y, double factor) {
+    	moveView((double)x / WIN_WIDTH * (1 - 1/factor), (1 - (double)y / WIN_HEIGHT) * (1 - 1/factor), 1/factor);
+    }
+
+    // Moves the view with the mouse, dx pixels right and dy pixels down
+    public void pan(int dx, int dy) {
+    	moveView(-(double)dx / WIN_WIDTH, (double)dy / WIN_HEIGHT, 1);
+    }
+
+    // Adds a change of the view to the pending one, which it follows
+    private void moveView(double x, double y, double scale) {
+    	synchronized (inputLock) {
+    		pendingX += pendingScale * x;
+    		pendingY += pendingScale * y;
+    		pendingScale *= scale;
+    	}
+    }
+
+    // Applies the input since the last frame, of which only the last sweep line position counts
+    private void applyInput() {
+    	int sweepY;
+    	double x, y, scale;
+    	synchronized (inputLock) {
+    		sweepY = pendingSweep;
+    		x = pendingX;
+    		y = pendingY;
+    		scale = pendingScale;
+    		pendingSweep = NO_SWEEP;
+    		pendingX = pendingY = 0;
+    		pendingScale = 1;
+    	}
+
+    	if (x != 0 || y != 0 || scale != 1) {
+    		double w = viewRight - viewLeft, h = viewTop - viewBottom;
+    		viewLeft += w * x;
+    		viewRight = viewLeft + w * scale;
+    		viewBottom += h * y;
+    		viewTop = viewBottom + h * scale;
+    		viewChanged = true;
+    	}
+    	if (sweepY != NO_SWEEP) {
+    		sweepLinePos = viewBottom + (1 - (double)sweepY / WIN_HEIGHT) * (viewTop - viewBottom);
+    		setBeachLine(sweepLinePos);
+    	}
+    }
+
+    // The GL context was created, or created again, so buffers made in an old one are gone
+    protected void init( GL2 gl2 ) {
+    	gl2.setSwapInterval(1); // Frames wait for the display's refresh
+    	for (Layer l : new Layer[]{ vdVertices, vdEdges, vdShade, dtEdges, dtShade, sites, sweep })
+    		l.forget();
+    }
+
+    // The diagram, triangulation or sites changed, so the next frame collects them again
+    public void invalidate() {
+    	dirty = true;
+    }
+
+    protected void render( GL2 gl2, int width, int height ) {
+    	
+    	SweepFrame f = frames.latest();
+    	if (f != null)
+    		show(f);
+    	applyInput();
+        if (dirty) {
+        	dirty = false;
+        	collect();
+        	viewChanged = true;
+        }
+        if (viewChanged) {
+        	project(gl2);
+        	cull();
+        	viewChanged = false;
+        }
+
+        gl2.glClear( GL.GL_COLOR_BUFFER_BIT );
+
+    	gl2.glPointSize(2);
+    	gl2.glBegin(GL.GL_POINTS);
+    	gl2.glColor3f(0, 0, 0);
+    	gl2.glVertex2f(0, 0);
+    	gl2.glPointSize(4);
+    	for (Point p : testPoints) {
+    		gl2.glColor3f(0, 0, .8f);
+    		gl2.glVertex2f((float)p.x, (float)p.y);
+    	}
+    	gl2.glEnd();
+    	
+        
+        gl2.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+        gl2.glEnableClientState(GL2.GL_COLOR_ARRAY);
+    	if (showVD) {
+    		vdShade.draw(gl2);
+    		vdVertices.draw(gl2);
+    		vdEdges.draw(gl2);
+    	}
+    	if (showDT) {
+    		dtShade.draw(gl2);
+    		dtEdges.draw(gl2);
+    	}
+    	sites.draw(gl2);
+
+        // draw sweep line
+        sweep.clear();
+        if (sweepLinePos != Float.NaN) {  
+    		sweep.color(0, 0, .8f);
+        	sweep.vertex(viewLeft, sweepLinePos);
+        	sweep.vertex(viewRight, sweepLinePos);
+        }
+        
+        // draw beach line
+    	sweep.color(.3f, .3f, .3f);
+        if (beachLine != null && !beachLine.isEmpty() && beachLine.get(0).rightArc != null) {
+        	double bp_i_x, bp_i1_x;
+        	
+        	// draw first arc
+        	BreakPoint bp_i = beachLine.get(0);
+        	flatten(bp_i.leftArc, viewLeft, breakPointX(0));
+
+        	// draw the arcs in between
+        	for (int i = 0; i < beachLine.size()-1; i++) {
+        		bp_i = beachLine.get(i);
+        		bp_i_x = breakPointX(i);
+        		bp_i1_x = breakPointX(i+1);
+            	
+            	if (bp_i_x == bp_i1_x) { // arc is a vertical line
+        			sweep.vertex(bp_i_x, sweepLinePos);
+        			sweep.vertex(bp_i_x, bp_i.leftArc.y(bp_i_x, sweepLinePos));
+            	} else {
+            		flatten(bp_i.rightArc, bp_i_x, bp_i1_x);
+            	}
+        	}
+
+        	// draw last arc
+        	bp_i = beachLine.get(beachLine.size()-1);
+        	flatten(bp_i.rightArc, breakPointX(beachLine.size()-1), viewRight);
+    		
+        } else if (beachLine != null && !beachLine.isEmpty()) {
+        	// draw the only arc
+        	flatten(beachLine.get(0).leftArc, viewLeft, viewRight);
+        }
+        
+        sweep.draw(gl2);
+        gl2.glDisableClientState(GL2.GL_COLOR_ARRAY);
+        gl2.glDisableClientState(GL2.GL_VERTEX_ARRAY);
+    }
+    
+    // Adds line segments along arc a from x0 to x1 to the sweep layer, leaving out what lies
+    // outside the view. The parabola's second derivative is 1/d everywhere, where d is the
+    // height of the site above the sweep line, so a chord of width h strays at most h^2/(8d) from
+    // it and one width h serves the whole arc.
+    private void flatten(Arc a, double x0, double x1) {
+    	double d = a.p.y - sweepLinePos;
+    	double c = (a.p.y + sweepLinePos) / 2; // Lowest point of the arc
+    	if (!(d > 0) || c > viewTop)
+    		return;
+
+    	double w = Math.sqrt(2 * d * (viewTop - c)); // The arc is in view within w of the site's x
+    	x0 = Math.max(x0, Math.max(viewLeft, a.p.x - w));
+    	x1 = Math.min(x1, Math.min(viewRight, a.p.x + w));
+    	if (!(x0 < x1))
+    		return;
+
+    	double h = Math.sqrt(8 * d * CURVE_TOLERANCE * (viewTop - viewBottom) / WIN_HEIGHT);
+    	int n = (h > 0 ? (int)Math.min(Math.ceil((x1 - x0) / h), WIN_WIDTH + 1) : 1);
+    	double x = x0, y = a.y(x, sweepLinePos);
+    	for (int i = 1; i <= n; i++) {
+    		sweep.vertex(x, y); // line start point
+    		x = (i == n ? x1 : x0 + (x1 - x0) * i / n);
+    		y = a.y(x, sweepLinePos);
+    		sweep.vertex(x, y); // line end point
+    	}
+    }
+
+    // Takes over the sweep line, beach line, diagram and history of a frame from the sweep thread
+    private void show(SweepFrame f) {
+    	frame = f;
+    	if (!Double.isNaN(f.sweepY))
+    		sweepLinePos = f.sweepY;
+    	frameLine.setArcs(f.arcs, f.arcs.length);
+    	frameEvents = -1;
+    	beachLine = frameLine.getBeachLine();
+    	dirty = true;
+    }
+
+    // Collects the diagram, triangulation and sites into their quadtrees. The diagram only comes
+    // from the last frame, as the thread that built it may be changing its DCEL for the next.
+    private void collect() {
+    	for (Quadtree t : new Quadtree[]{ vorVertexTree, boxVertexTree, vdEdgeTree, dtEdgeTree, siteTree })
+    		t.clear();
+
+    	if (frame != null) {
+    		for (int i = 0; i < frame.vertices.length; i += 2)
+    			vorVertexTree.add(frame.vertices[i], frame.vertices[i+1]);
+    		for (int i = 0; i < frame.corners.length; i += 2)
+    			boxVertexTree.add(frame.corners[i], frame.corners[i+1]);
+    		for (int i = 0; i < frame.edges.length; i += 4)
+    			vdEdgeTree.add(frame.edges[i], frame.edges[i+1], frame.edges[i+2], frame.edges[i+3]);
+    		for (int i = 0; i < frame.rays.length; i += 4)
+    			addRay(frame.rays[i], frame.rays[i+1], frame.rays[i+2], frame.rays[i+3]);
+    	}
+
+    	if (delaunayTriangulation != null) {
+    		for (HalfEdge e : delaunayTriangulation.edges) {
+    			if (e.origin != null && e.twin.origin != null && e.id < e.twin.id)
+    				dtEdgeTree.add(e.origin.coord.x, e.origin.coord.y, e.twin.origin.coord.x, e.twin.origin.coord.y);
+    		}
+    	}
+
+    	if (points != null) {
+    		for (float[] p : points)
+    			siteTree.add(p[0], p[1]);
+    	}
+
+    	for (Quadtree t : new Quadtree[]{ vorVertexTree, boxVertexTree, vdEdgeTree, dtEdgeTree, siteTree })
+    		t.build();
+    }
+
+    // Adds the edge from (x, y) in direction (dx, dy) to past the window bounds
+    private void addRay(double x, double y, double dx, double dy) {
+    	double t = ((maxX - minX) + (maxY - minY)) * WIN_MULTIPLIER / Math.hypot(dx, dy);
+    	vdEdgeTree.add(x, y, x + t * dx, y + t * dy);
+    }
+
+    // Fills the layers with what the quadtrees have in view
+    private void cull() {
+    	for (Layer l : new Layer[]{ vdVertices, vdEdges, vdShade, dtEdges, dtShade, sites })
+    		l.clear();
+
+    	double pixel = (viewRight - viewLeft) / WIN_WIDTH;
+    	vorVertexTree.draw(viewLeft, viewBottom, viewRight, viewTop, pixel, vdVertices, null, BACKGROUND);
+    	boxVertexTree.draw(viewLeft, viewBottom, viewRight, viewTop, pixel, vdVertices, null, BACKGROUND);
+    	vdEdgeTree.draw(viewLeft, viewBottom, viewRight, viewTop, pixel, vdEdges, vdShade, BACKGROUND);
+    	dtEdgeTree.draw(viewLeft, viewBottom, viewRight, viewTop, pixel, dtEdges, dtShade, BACKGROUND);
+    	siteTree.draw(viewLeft, viewBottom, viewRight, viewTop, pixel, sites, null, BACKGROUND);
+    }
+
+    // Position of breakpoint i of the beach line
+    private double breakPointX(int i) {
+    	BreakPoint bp = beachLine.get(i);
+    	double x = bp.getPositionX(sweepLinePos);
+    	if (!Double.isFinite(x)) // One of the arcs adjacent to bp is a vertical line
+    		if (bp.rightArc.p.y == sweepLinePos)
+    			x = bp.rightArc.p.x; // It is the right arc
+    		else
+    			x = bp.leftArc.p.x; // It is the left arc
+    	
+    	return x;
+    }
+    
+    // Shows the beach line the frame's history had at y, if it has one. Scrubbing between the
+    // same two events keeps the beach line already shown, so it only costs the search.
+	private void setBeachLine(double y) {
+    	if (frame == null || frame.history == null)
+    		return;
+    	int e = frame.history.countAbove(y);
+    	if (e == frameEvents)
+    		return;
+    	Point[] arcs = frame.history.after(e);
+    	frameLine.setArcs(arcs, arcs.length);
+    	frameEvents = e;
+    	beachLine = frameLine.getBeachLine();
+    }
+    
+    protected void addPoints(List<Point> ps) {
+    	List<float[]> pts = new ArrayList<float[]>();
+    	for (Point p : ps) {
+    		pts.add(new float[]{(float)p.x, (float)p.y});
+
+    		if (p.x > maxX)
+    			maxX = p.x;
+    		if (p.y > maxY)
+    			maxY = p.y;
+    		if (p.x < minX)
+    			minX = p.x;
+    		if (p.y < minY)
+    			minY = p.y;
+    	}
+    	points = pts; // Only once filled, as it is read by the render thread
+    	invalidate();
+    }
+    
+    // Puts the sweep line at window y with the next frame
+    public void setSweepLine(int y) {
+    	synchronized (inputLock) {
+    		pendingSweep = y;
+    	}
+    }
+
+	// Vertices of one kind of primitive, each with its own color, kept in a buffer object.
+	// They are given with color and vertex like glColor and glVertex, and uploaded by the next
+	// draw after they change.
+	static class Layer {
+		private static final int	FLOATS = 5;				// x, y, r, g, b
+		private static final int	STRIDE = 4 * FLOATS;	// in bytes
+
+		private final int			mode, usage;
+		private final float			pointSize;
+		private FloatBuffer			data = newFloatBuffer(256);
+		private float				r, g, b;
+		private int					count;
+		private int					buffer;					// 0 until the buffer object is made
+		private boolean				changed;
+
+		Layer(int mode, int usage, float pointSize) {
+			this.mode = mode;
+			this.usage = usage;
+			this.pointSize = pointSize;
+		}
+
+		void clear() {
+			data.clear();
+			count = 0;
+			changed = true;
+		}
+
+		void color(float r, float g, float b) {
+			this.r = r;
+			this.g = g;
+			this.b = b;
+		}
+
+		void vertex(double x, double y) {
+			if (data.remaining() < FLOATS) {
+				FloatBuffer d = newFloatBuffer(2 * data.capacity());
+				data.flip();
+				d.put(data);
+				data = d;
+			}
+			data.put((float)x).put((float)y).put(r).put(g).put(b);
+			count++;
+		}
+
+		void draw(GL2 gl2) {
+			if (count == 0)
+				return;
+
+			if (buffer == 0) {
+				int[] id = new int[1];
+				gl2.glGenBuffers(1, id, 0);
+				buffer = id[0];
+				changed = true;
+			}
+			gl2.glBindBuffer(GL.GL_ARRAY_BUFFER, buffer);
+			if (changed) {
+				data.flip();
+				gl2.glBufferData(GL.GL_ARRAY_BUFFER, (long)count * STRIDE, data, usage);
+				data.limit(data.capacity());
+				data.position(count * FLOATS);
+				changed = false;
+			}
+			gl2.glVertexPointer(2, GL.GL_FLOAT, STRIDE, 0);
+			gl2.glColorPointer(3, GL.GL_FLOAT, STRIDE, 8);
+			gl2.glPointSize(pointSize);
+			gl2.glDrawArrays(mode, 0, count);
+			gl2.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+		}
+
+		// Drops the buffer object of a lost context, so draw makes and fills a new one
+		void forget() {
+			buffer = 0;
+			changed = true;
+		}
+
+		private static FloatBuffer newFloatBuffer(int floats) {
+			return ByteBuffer.allocateDirect(4 * floats).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		}
+	}
+}
@@ -1,70 +1,101 @@
-package edu.isu.mattga;
-
-import java.awt.BorderLayout;
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
-import java.awt.event.MouseMotionListener;
-
-import javax.swing.JFrame;
-
-import com.jogamp.opengl.GLAutoDrawable;
-import com.jogamp.opengl.GLCapabilities;
-import com.jogamp.opengl.GLEventListener;
-import com.jogamp.opengl.GLProfile;
-import com.jogamp.opengl.awt.GLCanvas;
-
-public class VDDrawingSwing {
-	public static GLCanvas glcanvas;
-
-	public static void init(JFrame frame) {
-
-			GLProfile glprofile = GLProfile.getDefault();
-			GLCapabilities glcapabilities = new GLCapabilities( glprofile );
-			glcanvas = new GLCanvas( glcapabilities );
-
-			glcanvas.addGLEventListener( new GLEventListener() {
-
-				public void reshape( GLAutoDrawable glautodrawable, int x, int y, int width, int height ) {
-					VDDrawing.setup( glautodrawable.getGL().getGL2(), width, height );
-				}
-
-				public void init( GLAutoDrawable glautodrawable ) {
-				}
-
-				public void dispose( GLAutoDrawable glautodrawable ) {
-				}
-
-				public void display( GLAutoDrawable glautodrawable ) {
-					VDDrawing.render( glautodrawable.getGL().getGL2(), glautodrawable.getSurfaceWidth(), glautodrawable.getSurfaceHeight() );
-				}
-			});
-			
-			glcanvas.addMouseMotionListener(new MouseMotionListener() {
-				
-				public void mouseMoved(MouseEvent e) {}
-				
-				public void mouseDragged(MouseEvent e) {
-					VDDrawing.setSweepLine(e.getY());
-					glcanvas.display();
-				}
-			});
-			
-			glcanvas.addMouseListener(new MouseListener() {
-				
-				public void mouseReleased(MouseEvent e) {}
-				
-				public void mousePressed(MouseEvent e) {
-					VDDrawing.setSweepLine(e.getY());
-					glcanvas.display();
-				}
-				
-				public void mouseExited(MouseEvent e) {}
-				
-				public void mouseEntered(MouseEvent e) {}
-				
-				public void mouseClicked(MouseEvent e) {}
-			});
-
-			frame.getContentPane().add( glcanvas, BorderLayout.CENTER );
-	}
-}
+package edu.isu.mattga;
+
+import java.awt.BorderLayout;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+import com.jogamp.opengl.GLAutoDrawable;
+import com.jogamp.opengl.GLCapabilities;
+import com.jogamp.opengl.GLEventListener;
+import com.jogamp.opengl.GLProfile;
+import com.jogamp.opengl.awt.GLCanvas;
+import com.jogamp.opengl.util.FPSAnimator;
+
+// The canvas showing one drawing in a window, with the mouse input for it. Each window has its
+// own, so several diagrams can be shown at once.
+public class VDDrawingSwing {
+	public final GLCanvas glcanvas;
+	private final FPSAnimator animator;	// Draws a frame per display refresh
+	private int lastX, lastY;	// Where the mouse was, while panning
+
+	public VDDrawingSwing(JFrame frame, final VDDrawing drawing) {
+
+			GLProfile glprofile = GLProfile.getDefault();
+			GLCapabilities glcapabilities = new GLCapabilities( glprofile );
+			glcanvas = new GLCanvas( glcapabilities );
+
+			glcanvas.addGLEventListener( new GLEventListener() {
+
+				public void reshape( GLAutoDrawable glautodrawable, int x, int y, int width, int height ) {
+					drawing.setup( glautodrawable.getGL().getGL2(), width, height );
+				}
+
+				public void init( GLAutoDrawable glautodrawable ) {
+					drawing.init( glautodrawable.getGL().getGL2() );
+				}
+
+				public void dispose( GLAutoDrawable glautodrawable ) {
+				}
+
+				public void display( GLAutoDrawable glautodrawable ) {
+					drawing.render( glautodrawable.getGL().getGL2(), glautodrawable.getSurfaceWidth(), glautodrawable.getSurfaceHeight() );
+				}
+			});
+			
+			glcanvas.addMouseMotionListener(new MouseMotionListener() {
+				
+				public void mouseMoved(MouseEvent e) {}
+				
+				public void mouseDragged(MouseEvent e) {
+					if (SwingUtilities.isRightMouseButton(e)) {
+						drawing.pan(e.getX() - lastX, e.getY() - lastY);
+						lastX = e.getX();
+						lastY = e.getY();
+					} else {
+						drawing.setSweepLine(e.getY());
+					}
+				}
+			});
+			
+			glcanvas.addMouseListener(new MouseListener() {
+				
+				public void mouseReleased(MouseEvent e) {}
+				
+				public void mousePressed(MouseEvent e) {
+					if (SwingUtilities.isRightMouseButton(e)) {
+						lastX = e.getX();
+						lastY = e.getY();
+						return;
+					}
+					drawing.setSweepLine(e.getY());
+				}
+				
+				public void mouseExited(MouseEvent e) {}
+				
+				public void mouseEntered(MouseEvent e) {}
+				
+				public void mouseClicked(MouseEvent e) {}
+			});
+
+			// Wheel zooms around the mouse, right button drags the view
+			glcanvas.addMouseWheelListener(new MouseWheelListener() {
+				
+				public void mouseWheelMoved(MouseWheelEvent e) {
+					drawing.zoom(e.getX(), e.getY(), Math.pow(1.25, -e.getPreciseWheelRotation()));
+				}
+			});
+
+			frame.getContentPane().add( glcanvas, BorderLayout.CENTER );
+
+			// Mouse input only records what it wants changed. The animator's next frame applies all
+			// of it at once, so a fast drag costs one frame per refresh and not one per event.
+			animator = new FPSAnimator( glcanvas, 60, true );
+			animator.start();
+	}
+}
@@ -1,609 +1,719 @@
-package edu.isu.mattga;
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
-import java.util.Random;
-import java.util.regex.Pattern;
-
-import edu.isu.mattga.BeachLineStatus.Arc;
-import edu.isu.mattga.BeachLineStatus.BreakPoint;
-import edu.isu.mattga.DCEL.HalfEdge;
-import edu.isu.mattga.DCEL.Vertex;
-
-
-public class VoronoiDiagram {
-	DCEL 					D;
-	Queue<Event>			Q;
-	BeachLineStatus 		T;
-	List<Point>				sitePoints;
-	Map<Point,HalfEdge>		siteEdgeAdj;
-	Map<Point,List<Point>>	adjSites;
-	boolean					collinear; 
-
-	public VoronoiDiagram() {
-		sitePoints = new ArrayList<Point>();
-		siteEdgeAdj = new HashMap<Point,HalfEdge>();
-		adjSites = new HashMap<Point,List<Point>>();
-		collinear = false;
-	}
-
-	// Loads sites from input file. Checks for site points with the same y-coordinate
-	// and adds a small randomized number if found.
-	public void loadSites(String fileName) {
-
-		try {
-			BufferedReader fin = new BufferedReader(new InputStreamReader(new FileInputStream(fileName)));
-			Random rgen = new Random();
-
-			String line;
-			while ((line = fin.readLine()) != null) {
-				String points[] = line.replace(" ", "").split(Pattern.quote(")("));
-
-				for(String p : points) {
-					String[] coords = p.split(",");
-					double x = Double.parseDouble(coords[0].replace("(",""));
-					double y = Double.parseDouble(coords[1].replace(")",""));
-					boolean reject = false;
-
-					for (Point pt : sitePoints)
-						if (pt.y == y)
-							if (pt.x == x)
-								reject = true;
-							else
-								pt.y += rgen.nextDouble()*1e-5;
-					
-					if (!reject)
-						sitePoints.add(new Point(x, y));
-					reject = false;
-				}
-			}
-
-			sitePoints.sort(new Comparator<Point>() {
-				public int compare(Point o1, Point o2) {
-					return (int)(1e4*(o2.y - o1.y));
-				}
-			});
-			for (Point p : sitePoints)
-				adjSites.put(p, new ArrayList<Point>());
-
-			fin.close();
-		} catch (Exception e) {
-			e.printStackTrace();
-		}  
-	}
-
-	// Sweep line algorithm for constructing the Voronoi Diagram. Also sets variables for rendering
-	// of the diagram using VDDrawing.
-	public void constructVD() {
-
-		Q = new PriorityQueue<Event>(getEvents(sitePoints));
-		T = new BeachLineStatus();
-		D = new DCEL();
-
-		VDDrawing.addPoints(sitePoints);
-		VDDrawing.beachLine = T.getBeachLine();
-		VDDrawing.voronoiDiagram = D;
-		VDDrawing.beachLines.put(Double.MAX_VALUE, T.copy().getBeachLine());
-		try { // Wait a little to allow for OpenGL to propagate new projection settings
-			Thread.sleep(500);
-		} catch (InterruptedException e1) {
-			e1.printStackTrace();
-		}
-		
-		while (!Q.isEmpty()) {
-			Event e = Q.peek();
-			double y = e.p.y; 
-			VDDrawing.sweepLinePos = (float)y;
-
-			if (e.type == EventType.SiteEvent) {
-				System.out.println("---- Processing site " + e.p + " ----\n");
-				handleSiteEvent(e);
-			} else {
-				System.out.println("---- Processing circle at " + new Point(e.p.x, e.p.y) + " ----\n");
-				handleCircleEvent(e);
-			}
-			Q.remove(e);
-
-			VDDrawing.beachLines.put(e.p.y, T.copy().getBeachLine());
-			VDDrawingSwing.glcanvas.display();
-
-			try {
-				Thread.sleep(100);
-			} catch (InterruptedException ex) {
-				ex.printStackTrace();
-			}
-		}
-
-		addBoundingBox();
-		D.setFaces();
-		mapFacesToVorCells();
-		
-		System.out.println("****** Voronoi Diagram ******\n");
-		System.out.println(D);
-	}
-
-	private void handleSiteEvent(Event e) {
-
-		Point p = e.p;
-		if (T.isEmpty()) {
-			T.initWithArc(p);
-			return;
-		}
-
-		Arc arc = T.getArcAbove(p, p.y); // Sweep line is at p.y
-		if (arc.circleEvent != null) {
-			Q.remove(arc.circleEvent); // False alarm
-		}
-
-		BreakPoint[] bps = T.splitArc(arc, p);
-		BreakPoint lbp = bps[0];
-		BreakPoint rbp = bps[1];
-
-		// Determine slope of the edge traced out by lbp and rbp
-		HalfEdge e1 = D.addEdge();
-		adjSites.get(lbp.leftArc.p).add(lbp.rightArc.p);
-		adjSites.get(lbp.rightArc.p).add(lbp.leftArc.p);
-		siteEdgeAdj.put(lbp.rightArc.p,e1);
-		siteEdgeAdj.put(lbp.leftArc.p,e1);
-		lbp.tracedEdge = e1;
-		rbp.tracedEdge = e1;
-		double dl = .5;
-		double x = rbp.getPositionX(p.y - dl);
-		Point p1 = new Point(p.x, rbp.rightArc.y(p.x, p.y));
-		Point p2 = new Point(x, rbp.rightArc.y(x, p.y - dl));
-		e1.twin.slope = e1.slope = (p2.y - p1.y) / (p2.x - p1.x);
-
-		Arc _a;
-		Point pi, pj, pk;
-		_a = T.getRightArc(rbp.rightArc);
-		pi = rbp.leftArc.p;
-		pj = rbp.rightArc.p;
-		if (_a != null) {
-			pk = _a.p;
-			Event ce = getCircleEvent(pi, pj, pk);
-			if (ce != null) {
-				ce.dArc = rbp.rightArc;
-				ce.pi = pi; ce.pj = pj; ce.pk = pk;
-				double d = ce.p.y - p.y;
-				if (!circleContainsPoint(ce) && !Q.contains(ce) && d < 1e-5) {
-					rbp.rightArc.circleEvent = ce;
-					Q.add(ce);
-				}
-			}
-		}
-
-		_a = T.getLeftArc(lbp.leftArc);
-		pj = lbp.rightArc.p;
-		pk = lbp.leftArc.p;
-		if (_a != null) {
-			pi = _a.p;
-			Event ce = getCircleEvent(pi, pj, pk);
-			if (ce != null) {
-				ce.dArc = lbp.leftArc;
-				ce.pi = pi; ce.pj = pj; ce.pk = pk;
-				if (!circleContainsPoint(ce) && !Q.contains(ce) && ce.p.y - p.y < 1e-5) {
-					lbp.leftArc.circleEvent = ce;
-					Q.add(ce);
-				}
-			}
-		}
-	}
-
-	private void handleCircleEvent(Event e) {
-		BreakPoint[] bps = T.removeArc(e.p);
-		BreakPoint lbp = bps[0], rbp = bps[1], newbp = bps[2];
-		if (lbp.leftArc.circleEvent != null)
-			Q.remove(lbp.leftArc.circleEvent);
-		if (rbp.rightArc.circleEvent != null)
-			Q.remove(rbp.rightArc.circleEvent);
-
-		Point center = new Point(e.p.x, e.p.y + e.radius);
-		Vertex v = D.addVertex(center);
-		v.vorVertex = true;
-
-		D.setEdgeOrigin(lbp.tracedEdge, v);
-		double dl = .5;
-		double x = lbp.getPositionX(e.p.y - dl);
-		if (x > e.p.x) {
-			if (lbp.tracedEdge.orientation == 0) {
-				lbp.tracedEdge.orientation = 1;
-			}
-		} else {
-			if (lbp.tracedEdge.orientation == 0) {
-				lbp.tracedEdge.orientation = 2;
-			}
-		}
-
-		D.setEdgeOrigin(rbp.tracedEdge, v);
-		x = rbp.getPositionX(e.p.y - dl);
-		if (x > e.p.x) {
-			if (rbp.tracedEdge.orientation == 0) {
-				rbp.tracedEdge.orientation = 1;
-			}
-		} else {
-			if (rbp.tracedEdge.orientation == 0) {
-				rbp.tracedEdge.orientation = 2;
-			}
-		}
-
-		// new edge between points whose arcs now intersect at newbp
-		HalfEdge _e = D.addEdge();
-		D.setEdgeOrigin(_e, v);
-		adjSites.get(newbp.rightArc.p).add(newbp.leftArc.p);
-		adjSites.get(newbp.leftArc.p).add(newbp.rightArc.p);
-		newbp.tracedEdge = _e;
-		dl = .5;
-		x = newbp.getPositionX(e.p.y - dl);
-		Point p1 = new Point(e.p.x, e.p.y + e.radius);
-		Point p2 = new Point(x, newbp.rightArc.y(x, e.p.y - dl));
-		_e.twin.slope = _e.slope = (p2.y - p1.y) / (p2.x - p1.x);
-		if (x - e.p.x > 0) {
-			if (_e.orientation == 0)
-				_e.orientation = 2;
-		} else {
-			if (_e.orientation == 0)
-				_e.orientation = 1;
-		}
-
-		// Set next & prev pointers
-		HalfEdge e1 = (lbp.tracedEdge.origin == v ? lbp.tracedEdge.twin : lbp.tracedEdge);
-		HalfEdge e2 = (rbp.tracedEdge.origin == v ? rbp.tracedEdge : rbp.tracedEdge.twin);
-		HalfEdge e3 = (_e.origin == v ? _e : _e.twin);
-		e1.next = e2; e2.prev = e1;
-		e2.twin.next = e3; e3.prev = e2.twin;
-		e3.twin.next = e1.twin; e1.twin.prev = e3.twin;
-		
-		Arc _a;
-		Point pi, pj, pk;
-		_a = T.getLeftArc(newbp.leftArc);
-		pj = newbp.leftArc.p;
-		pk = newbp.rightArc.p;
-		if (_a != null) {
-			pi = _a.p;
-			Event ce = getCircleEvent(pi, pj, pk);
-			if (ce != null) {
-				ce.dArc = newbp.leftArc;
-				ce.pi = pi; ce.pj = pj; ce.pk = pk;
-				if (!circleContainsPoint(ce) && !Q.contains(ce) && ce.p.y - e.p.y < 1e-5) {
-					newbp.leftArc.circleEvent = ce;
-					Q.add(ce);
-				}
-			}
-		}
-
-		_a = T.getRightArc(newbp.rightArc);
-		pi = newbp.leftArc.p;
-		pj = newbp.rightArc.p;
-		if (_a != null) {
-			pk = _a.p;
-			Event ce = getCircleEvent(pi, pj, pk);
-			if (ce != null) {
-				ce.dArc = newbp.rightArc;
-				ce.pi = pi; ce.pj = pj; ce.pk = pk;
-				if (!circleContainsPoint(ce) && !Q.contains(ce) && ce.p.y - e.p.y < 1e-5) {
-					newbp.rightArc.circleEvent = ce;
-					Q.add(ce);
-				}
-			}
-		}
-	}
-
-	// Get the circle event for the three points a, b, and c, including radius and origin.
-	private Event getCircleEvent(Point a, Point b, Point c) {
-
-		if (Math.abs(a.y - b.y) < 1e-5 && Math.abs(b.y - c.y) < 1e-5 && Math.abs(a.y - c.y) < 1e-5)
-			return null; // Points are colinear
-		
-		// Calculate the circle
-		double A = b.x - a.x;
-		double B = b.y - a.y;
-		double C = c.x - a.x;
-		double _D = c.y - a.y;
-		double E = A*(a.x+b.x) + B*(a.y+b.y);
-		double F = C*(a.x+c.x) + _D*(a.y+c.y);
-		double G = 2*(A*(c.y-b.y) - B*(c.x-b.x));
-
-		// Circle with radius r and origin o
-		Point o = new Point( (_D*E-B*F)/G, (A*F-C*E)/G );
-		double r = Math.sqrt(Math.pow(o.x-a.x,2) + Math.pow(o.y-a.y,2));
-
-		Event e = new Event();
-		e.type = EventType.CircleEvent;
-		e.p = new Point(o.x, o.y - r); // set lowest point of circle
-		e.radius = r;
-
-		return e;
-	}
-
-	// Checks if any site point lies inside a circle
-	public boolean circleContainsPoint(Event ce) {
-
-		for (Point p : sitePoints) {
-			if (p == ce.pi || p == ce.pj || p == ce.pk)
-				continue;
-			
-			Point o = new Point(ce.p.x, ce.p.y + ce.radius);
-			double d = Math.pow(p.x - o.x, 2) + Math.pow(p.y - o.y, 2) - ce.radius*ce.radius;
-			if (d < -1e-5)
-				return true;
-		}
-
-		return false;
-	}
-
-	private void addBoundingBox() {
-		
-		// Determine the bounding box
-		double left = 0, right = 0, top = 0, bottom = 0;
-		for (Vertex v : D.vertices) {
-			if (v.coord.x < left)
-				left = v.coord.x;
-			if (v.coord.x > right)
-				right = v.coord.x;
-			if (v.coord.y > top)
-				top = v.coord.y;
-			if (v.coord.y < bottom)
-				bottom = v.coord.y;
-		}
-		for (Point p : sitePoints) {
-			if (p.x < left)
-				left = p.x;
-			if (p.x > right)
-				right = p.x;
-			if (p.y > top)
-				top = p.y;
-			if (p.y < bottom)
-				bottom = p.y;
-		}
-		// Add some buffer between outermost sites/vertices and the box
-		left	*= 1.5;
-		right	*= 1.5;
-		top		*= 1.5;
-		bottom	*= 1.5;
-		Vertex v1 = D.addVertex(new Point(left, top));
-		Vertex v2 = D.addVertex(new Point(right, top));
-		Vertex v3 = D.addVertex(new Point(right, bottom));
-		Vertex v4 = D.addVertex(new Point(left, bottom));
-		HalfEdge e12 = D.addEdge(v1, v2); // top edge
-		HalfEdge e23 = D.addEdge(v2, v3); // right edge
-		HalfEdge e34 = D.addEdge(v3, v4); // bottom edge
-		HalfEdge e41 = D.addEdge(v4, v1); // left edge
-		v1.incidentEdge = e12; v1.vorVertex = false;
-		v2.incidentEdge = e23; v2.vorVertex = false;
-		v3.incidentEdge = e34; v3.vorVertex = false;
-		v4.incidentEdge = e41; v4.vorVertex = false;
-		e12.next = e23; e12.prev = e41;
-		e23.next = e34; e23.prev = e12;
-		e34.next = e41; e34.prev = e23;
-		e41.next = e12; e41.prev = e34;
-		e12.twin.next = e41.twin; e12.twin.prev = e23.twin;
-		e41.twin.next = e34.twin; e41.twin.prev = e12.twin;
-		e34.twin.next = e23.twin; e34.twin.prev = e41.twin;
-		e23.twin.next = e12.twin; e23.twin.prev = e34.twin;
-		// Initialize boundary lists and add outer edges of the bounding box (edges that traverse cw)
-		List<HalfEdge> topEdges = new ArrayList<HalfEdge>(); topEdges.add(e12);
-		List<HalfEdge> rightEdges = new ArrayList<HalfEdge>(); rightEdges.add(e23);
-		List<HalfEdge> bottomEdges = new ArrayList<HalfEdge>(); bottomEdges.add(e34);
-		List<HalfEdge> leftEdges = new ArrayList<HalfEdge>(); leftEdges.add(e41);
-		// Add these edges at the end to avoid modifying the list we are iterating.
-		List<HalfEdge> newEdges = new ArrayList<HalfEdge>(); 
-		
-		for (HalfEdge e : D.edges) {
-			HalfEdge _e = null; // Determine edge whose origin will intersect with the bounding box
-			if ( e.origin == null)
-				_e = e.twin;
-			else if (e.twin.origin == null)
-				_e = e;
-
-			if (_e != null) {
-				if (_e.origin == null) {
-					// No origin...Must be the case of collinear points with all vertical edges
-					collinear = true;
-					boundVerticalLines(top, topEdges, bottom, bottomEdges);
-					return;
-				}
-				
-				Point o = _e.origin.coord;
-				if (_e.slope == 0.0)
-					_e.slope += 1e-5;
-				if (_e.slope > 0 && _e.orientation == 2) { // up and to the right
-					double top_x = (top - o.y) / _e.slope + o.x;
-					double right_y = _e.slope * (right - o.x) + o.y;
-					
-					if (top_x < right) {
-						// Find top bounding edge intersected at (top_x, top)
-						HalfEdge e_intersected = topEdges.get(0);
-						for (int i = 0; top_x > e_intersected.twin.origin.coord.x ||
-										top_x < e_intersected.origin.coord.x; i++) 
-							e_intersected = topEdges.get(i);
-						HalfEdge e_new = D.intersectEdge(e_intersected, _e, new Point(top_x, top));
-						topEdges.add(e_new);
-						newEdges.add(e_new); newEdges.add(e_new.twin);
-					} else {
-						// Find right bounding edge intersected at (right, right_y)
-						HalfEdge e_intersected = rightEdges.get(0);
-						for (int i = 0; right_y < e_intersected.twin.origin.coord.y ||
-										right_y > e_intersected.origin.coord.y; i++) 
-							e_intersected = rightEdges.get(i);
-						HalfEdge e_new = D.intersectEdge(e_intersected, _e, new Point(right, right_y));
-						rightEdges.add(e_new);
-						newEdges.add(e_new); newEdges.add(e_new.twin);
-					}
-				} else if (_e.slope < 0 && _e.orientation == 2) { // down and to the right
-					double right_y = _e.slope * (right - o.x) + o.y;
-					double bottom_x = (bottom - o.y) / _e.slope + o.x;
-
-					if (bottom_x < right) {
-						// Find bottom bounding edge intersected at (bottom_x, bottom)
-						HalfEdge e_intersected = bottomEdges.get(0);
-						for (int i = 0; bottom_x < e_intersected.twin.origin.coord.x ||
-										bottom_x > e_intersected.origin.coord.x; i++) 
-							e_intersected = bottomEdges.get(i);
-						HalfEdge e_new = D.intersectEdge(e_intersected, _e, new Point(bottom_x, bottom));
-						bottomEdges.add(e_new);
-						newEdges.add(e_new); newEdges.add(e_new.twin);
-					} else {
-						// Find right bounding edge intersected at (right, right_y)
-						HalfEdge e_intersected = rightEdges.get(0);
-						for (int i = 0; right_y < e_intersected.twin.origin.coord.y ||
-										right_y > e_intersected.origin.coord.y; i++) 
-							e_intersected = rightEdges.get(i);
-						HalfEdge e_new = D.intersectEdge(e_intersected, _e, new Point(right, right_y));
-						rightEdges.add(e_new);
-						newEdges.add(e_new); newEdges.add(e_new.twin);
-					}
-				} else if (_e.slope > 0 && _e.orientation == 1) { // down and to the left
-					double bottom_x = (bottom - o.y) / _e.slope + o.x;
-					double left_y = _e.slope * (left - o.x) + o.y;
-
-					if (bottom_x > left) {
-						// Find bottom bounding edge intersected at (bottom_x, bottom)
-						HalfEdge e_intersected = bottomEdges.get(0);
-						for (int i = 0; bottom_x < e_intersected.twin.origin.coord.x ||
-										bottom_x > e_intersected.origin.coord.x; i++) 
-							e_intersected = bottomEdges.get(i);
-						HalfEdge e_new = D.intersectEdge(e_intersected, _e, new Point(bottom_x, bottom));
-						bottomEdges.add(e_new);
-						newEdges.add(e_new); newEdges.add(e_new.twin);
-					} else {
-						// Find left bounding edge intersected at (left, left_y)
-						HalfEdge e_intersected = leftEdges.get(0);
-						for (int i = 0; left_y > e_intersected.twin.origin.coord.y ||
-										left_y < e_intersected.origin.coord.y; i++) 
-							e_intersected = leftEdges.get(i);
-						HalfEdge e_new = D.intersectEdge(e_intersected, _e, new Point(left, left_y));
-						leftEdges.add(e_new);
-						newEdges.add(e_new); newEdges.add(e_new.twin);
-					}
-				} else if (_e.slope < 0 && _e.orientation == 1) { // up and to the left
-					double top_x = (top - o.y) / _e.slope + o.x;
-					double left_y = _e.slope * (left - o.x) + o.y;
-
-					if (top_x > left) {
-						// Find top bounding edge intersected at (top_x, top)
-						HalfEdge e_intersected = topEdges.get(0);
-						for (int i = 0; top_x > e_intersected.twin.origin.coord.x ||
-										top_x < e_intersected.origin.coord.x; i++) 
-							e_intersected = topEdges.get(i);
-						HalfEdge e_new = D.intersectEdge(e_intersected, _e, new Point(top_x, top));
-						topEdges.add(e_new);
-						newEdges.add(e_new); newEdges.add(e_new.twin);
-					} else {
-						// Find left bounding edge intersected at (left, left_y)
-						HalfEdge e_intersected = leftEdges.get(0);
-						for (int i = 0; left_y > e_intersected.twin.origin.coord.y ||
-										left_y < e_intersected.origin.coord.y; i++) 
-							e_intersected = leftEdges.get(i);
-						HalfEdge e_new = D.intersectEdge(e_intersected, _e, new Point(left, left_y));
-						leftEdges.add(e_new);
-						newEdges.add(e_new); newEdges.add(e_new.twin);
-					}
-				}
-//				System.out.println(D);
-			}
-		}
-		D.edges.addAll(newEdges);
-	}
-	
-	private void boundVerticalLines(double top, List<HalfEdge> tE, double bottom, List<HalfEdge> bE) {
-		
-		Collections.sort(sitePoints, new Comparator<Point>() {
-			public int compare(Point o1, Point o2) {
-				return (int)(1e4*(o1.x - o2.x));
-			}
-		});
-		HalfEdge e1, e2 = null;
-		for (int i = 0; i < sitePoints.size()-1; i++) {
-			double x_mid = sitePoints.get(i).x + (sitePoints.get(i+1).x - sitePoints.get(i).x) / 2;
-			e1 = D.edges.get(2*i);
-			e2 = D.edges.get(2*i+1);
-			siteEdgeAdj.put(sitePoints.get(i), e1);
-			e1.twin = e2; e2.twin = e1;
-			
-			HalfEdge e_intersected = tE.get(0);
-			for (int j = 0; x_mid > e_intersected.twin.origin.coord.x ||
-							x_mid < e_intersected.origin.coord.x; j++) 
-				e_intersected = tE.get(j);
-			HalfEdge e_new = D.intersectEdge(e_intersected, e1, new Point(x_mid, top));
-			tE.add(e_new);
-			D.edges.add(e_new); D.edges.add(e_new.twin);
-
-			e_intersected = bE.get(0);
-			for (int j = 0; x_mid < e_intersected.twin.origin.coord.x ||
-							x_mid > e_intersected.origin.coord.x; j++) 
-				e_intersected = bE.get(j);
-			e_new = D.intersectEdge(e_intersected, e2, new Point(x_mid, bottom));
-			bE.add(e_new);
-			D.edges.add(e_new); D.edges.add(e_new.twin);
-		}
-		siteEdgeAdj.put(sitePoints.get(sitePoints.size()-1), e2);
-	}
-	
-	private void mapFacesToVorCells() {
-		for (Map.Entry<Point,HalfEdge> e : siteEdgeAdj.entrySet()) {
-			Point site = e.getKey();
-			HalfEdge edge = e.getValue();
-			
-			// Check what edge we want based on the turn it makes with the site
-			Point a = new Point(edge.twin.origin.coord.x - edge.origin.coord.x, edge.twin.origin.coord.y - edge.origin.coord.y);
-			Point b = new Point(site.x - edge.origin.coord.x, site.y - edge.origin.coord.y);
-			double dir = a.x*b.y - a.y*b.x;
-			if (dir < 0)
-				edge = edge.twin;
-			
-			edge.incidentFace.id = sitePoints.indexOf(site) + 1;
-			edge.incidentFace.name = "c" + edge.incidentFace.id;
-		}
-	}
-	
-	private List<Event> getEvents(List<Point> ps) {
-		List<Event> es = new ArrayList<Event>();
-
-		for (Point p : ps) {
-			Event e = new Event();
-			e.p = p;
-			e.type = EventType.SiteEvent;
-			es.add(e);
-		}
-
-		return es;
-	}
-
-	public class Event implements Comparable<Event> {
-		Point p;
-		EventType type;
-		
-		// Circle event variables
-		Point pi, pj, pk;
-		Arc dArc;
-		double radius;
-
-		@Override
-		public boolean equals(Object o) {
-			Event e = (Event)o;
-			if (e.type == EventType.CircleEvent && type == EventType.CircleEvent)
-				return	(pi == e.pi || pi == e.pj || pi == e.pk) &&
-						(pj == e.pi || pj == e.pj || pj == e.pk) &&
-						(pk == e.pi || pk == e.pj || pk == e.pk);
-			else
-				return Math.abs(e.p.y - this.p.y) < 1e-8;
-		}
-
-		public int compareTo(Event o) {
-			return Double.compare(o.p.y, this.p.y);
-		}
-	}
-
-	enum EventType { 
-		SiteEvent,
-		CircleEvent
-	}
-}
+package edu.isu.mattga;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.regex.Pattern;
+
+import edu.isu.mattga.BeachLineStatus.Arc;
+import edu.isu.mattga.BeachLineStatus.BreakPoint;
+import edu.isu.mattga.DCEL.Face;
+import edu.isu.mattga.DCEL.HalfEdge;
+import edu.isu.mattga.DCEL.Vertex;
+
+
+public class VoronoiDiagram {
+	DCEL 					D;
+	Queue<Event>			Q;
+	BeachLineStatus 		T;
+	List<Point>				sitePoints;
+	Map<Point,List<Point>>	adjSites;
+	Face[]					cells;		// Voronoi cell of each site, indexed by cell id (1..n)
+	boolean					collinear; 
+	double					weldTolerance = EPSILON;	// Relative to the largest site coordinate, 0 disables welding
+	VDDrawing				drawing;	// Where constructVD() shows the sweep, null to not show it
+	CancellationToken		token;		// Checked by the builds as they go, null to never stop them
+
+	static final double			EPSILON = 1e-12;	// Rounding slack, relative to the largest site coordinate
+
+	// Records kept between builds so that rebuilding with build() allocates as little as possible.
+	// Each build hands them out again, so a new build invalidates the previous diagram.
+	private List<Point>			sitePool = new ArrayList<Point>();
+	private List<List<Point>>	adjPool = new ArrayList<List<Point>>();
+	private List<Event>			eventPool = new ArrayList<Event>();
+	private int					sitePoolUsed, eventPoolUsed;
+	private List<HalfEdge>		topEdges = new ArrayList<HalfEdge>(), rightEdges = new ArrayList<HalfEdge>(),
+								bottomEdges = new ArrayList<HalfEdge>(), leftEdges = new ArrayList<HalfEdge>(),
+								newEdges = new ArrayList<HalfEdge>();
+	private double[]			circle = new double[3];	// Scratch result of circumcircle
+	private double[]			siteX = new double[0], siteY = new double[0];	// sitePoints, one array per coordinate, for cellAt()
+	private int					siteCoords;		// Sites in siteX and siteY, which are filled on demand
+	private double				magnitude;		// Largest site coordinate so far, which tolerances scale with
+	private double				topY;			// y of the first site, whose row starts the beach line
+	private SiteSorter.SortedSites	siteStream;	// Sites not yet read by build(SortedSites)
+
+	public VoronoiDiagram() {
+		sitePoints = new ArrayList<Point>();
+		adjSites = new HashMap<Point,List<Point>>();
+		collinear = false;
+		D = new DCEL();
+		Q = new PriorityQueue<Event>();
+		T = new BeachLineStatus();
+	}
+
+	// Loads sites from input file. Duplicates are left out.
+	public void loadSites(String fileName) {
+
+		try {
+			BufferedReader fin = new BufferedReader(new InputStreamReader(new FileInputStream(fileName)));
+
+			String line;
+			while ((line = fin.readLine()) != null) {
+				String points[] = line.replace(" ", "").split(Pattern.quote(")("));
+
+				for(String p : points) {
+					String[] coords = p.split(",");
+					double x = Double.parseDouble(coords[0].replace("(",""));
+					double y = Double.parseDouble(coords[1].replace(")",""));
+					addSite(x, y);
+				}
+			}
+			prepareSites();
+
+			fin.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}  
+	}
+
+	// Replaces the sites with copies of ps, which must not be this diagram's own site points.
+	// Follow with build() to construct the diagram again.
+	public void setSites(List<Point> ps) {
+		sitePoints.clear();
+		sitePoolUsed = 0;
+		for (Point p : ps)
+			addSite(p.x, p.y);
+		prepareSites();
+	}
+
+	private void addSite(double x, double y) {
+		sitePoints.add(newSite(x, y));
+	}
+
+	private Point newSite(double x, double y) {
+		if (sitePoolUsed == sitePool.size())
+			sitePool.add(new Point(x, y));
+		Point p = sitePool.get(sitePoolUsed++);
+		p.x = x;
+		p.y = y;
+
+		return p;
+	}
+
+	// Sorts the sites for the sweep and gives each an empty adjacency list. Duplicates are left
+	// out, which takes one sort instead of comparing each site with all the others. Sites keep
+	// their coordinates, so sites with the same y are left for the sweep to order by x.
+	private void prepareSites() {
+		sitePoints.sort(SiteSorter.SWEEP_ORDER);
+		int kept = 0;
+		magnitude = 0;
+		for (Point p : sitePoints) {
+			Point q = (kept > 0 ? sitePoints.get(kept-1) : null);
+			if (q != null && p.x == q.x && p.y == q.y)
+				continue;
+			sitePoints.set(kept++, p);
+			magnitude = Math.max(magnitude, Math.max(Math.abs(p.x), Math.abs(p.y)));
+		}
+		sitePoints.subList(kept, sitePoints.size()).clear();
+
+		adjSites.clear();
+		for (int i = 0; i < sitePoints.size(); i++) {
+			if (i == adjPool.size())
+				adjPool.add(new ArrayList<Point>());
+			adjSites.put(sitePoints.get(i), adjPool.get(i));
+		}
+		siteCoords = 0;
+	}
+
+	// Sweep line algorithm for constructing the Voronoi Diagram. Also animates the sweep in
+	// drawing, if set.
+	public void constructVD() {
+
+		reset();
+
+		if (drawing != null) {
+			drawing.addPoints(sitePoints);
+			drawing.beachLines.clear();
+			try { // Wait a little to allow for OpenGL to propagate new projection settings
+				Thread.sleep(500);
+			} catch (InterruptedException e1) {
+				Thread.currentThread().interrupt(); // Stops the sweep, if it has a token
+			}
+		}
+		
+		try {
+			sweep(drawing != null);
+			weldVertices();
+			addBoundingBox();
+		} catch (BuildCancelledException e) {
+			discard();
+			throw e;
+		}
+		if (drawing != null)
+			drawing.frames.offer(SweepFrame.finished(D, drawing.beachLines));
+		
+		System.out.println("****** Voronoi Diagram ******\n");
+		System.out.println(D);
+	}
+
+	// Constructs the diagram without drawing or printing. Repeated builds, with setSites() in
+	// between, reuse the DCEL, beach line and event records of the previous build.
+	public void build() {
+		reset();
+		try {
+			sweep(false);
+			weldVertices();
+			addBoundingBox();
+		} catch (BuildCancelledException e) {
+			discard();
+			throw e;
+		}
+	}
+
+	// Constructs the diagram like build() from sites already in sweep order, which replace any
+	// set before. Each site is read once the sweep reaches the one before it, instead of all
+	// being queued at the start, so they are never all held twice. Nothing is kept for a site
+	// besides its cell and its neighbours, which make up the result.
+	public void build(SiteSorter.SortedSites sites) throws IOException {
+		sitePoints.clear();
+		sitePoolUsed = 0;
+		siteCoords = 0;
+		magnitude = 0;
+		adjSites.clear();
+		cells = new Face[(int)sites.count() + 1];
+		clearSweep();
+
+		siteStream = sites;
+		try {
+			queueNextSite();
+			sweep(false);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} catch (BuildCancelledException e) {
+			sitePoints.clear();
+			discard();
+			throw e;
+		} finally {
+			siteStream = null;
+		}
+		if (cells.length != sitePoints.size() + 1) // Duplicates were left out
+			cells = Arrays.copyOf(cells, sitePoints.size() + 1);
+
+		try {
+			weldVertices();
+			addBoundingBox();
+		} catch (BuildCancelledException e) {
+			discard();
+			throw e;
+		}
+	}
+
+	// Clears the previous build and queues a site event for each site
+	private void reset() {
+		clearSweep();
+		for (List<Point> adj : adjSites.values())
+			adj.clear();
+		addSiteEvents();
+	}
+
+	private void clearSweep() {
+		D.reset();
+		T.reset();
+		Q.clear();
+		eventPoolUsed = 0;
+		collinear = false;
+	}
+
+	// Drops what a stopped build left, and the records kept for the next one, so that their
+	// memory is freed at once. The sites are kept, to build again.
+	private void discard() {
+		D = new DCEL();
+		T = new BeachLineStatus();
+		Q = new PriorityQueue<Event>();
+		eventPool = new ArrayList<Event>();
+		eventPoolUsed = 0;
+		for (List<Point> adj : adjSites.values())
+			adj.clear();
+		cells = null;
+		collinear = false;
+	}
+
+	private void sweep(boolean animate) {
+		T.history = (animate ? drawing.beachLines : null);
+		if (animate && !Q.isEmpty())
+			drawing.frames.offer(SweepFrame.of(Q.peek().p.y, T, D));
+		long swept = 0, total = (siteStream != null ? siteStream.count() : sitePoints.size());
+		while (!Q.isEmpty()) {
+			if (token != null)
+				token.step("sweep", swept, total);
+			Event e = Q.poll();
+			if (e.cancelled)
+				continue;
+
+			if (e.type == EventType.SiteEvent) {
+				if (animate)
+					System.out.println("---- Processing site " + e.p + " ----\n");
+				handleSiteEvent(e);
+				swept++;
+				if (siteStream != null)
+					queueNextSite();
+			} else {
+				if (animate)
+					System.out.println("---- Processing circle at " + new Point(e.p.x, e.p.y) + " ----\n");
+				handleCircleEvent(e);
+			}
+
+			if (!animate)
+				continue;
+			// Hand the frame to the render loop, without waiting for it to be drawn
+			drawing.frames.offer(SweepFrame.of(e.p.y, T, D));
+
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				if (token != null)
+					token.check("sweep", swept, total);
+			}
+		}
+	}
+
+	private void handleSiteEvent(Event e) {
+
+		Point p = e.p;
+		if (T.isEmpty()) {
+			T.initWithArc(p, e.cell);
+			topY = p.y;
+			return;
+		}
+		if (p.y == topY) { // Beside the arcs of the top row, which no arc lies above yet
+			BreakPoint bp = T.appendArc(p, e.cell);
+			HalfEdge e1 = D.addEdge();
+			adjSites.get(bp.leftArc.p).add(bp.rightArc.p);
+			adjSites.get(bp.rightArc.p).add(bp.leftArc.p);
+			bp.tracedEdge = e1;
+			D.setIncidentFace(e1, bp.rightArc.cell);
+			D.setIncidentFace(e1.twin, bp.leftArc.cell);
+			setTracedDirection(bp);
+			return;
+		}
+
+		Arc arc = T.getArcAbove(p, p.y); // Sweep line is at p.y
+		cancelCircleEvent(arc); // False alarm
+
+		BreakPoint[] bps = T.splitArc(arc, p, e.cell);
+		BreakPoint lbp = bps[0];
+		BreakPoint rbp = bps[1];
+
+		// lbp and rbp trace out the same edge in opposite directions
+		HalfEdge e1 = D.addEdge();
+		adjSites.get(lbp.leftArc.p).add(lbp.rightArc.p);
+		adjSites.get(lbp.rightArc.p).add(lbp.leftArc.p);
+		lbp.tracedEdge = e1;
+		rbp.tracedEdge = e1.twin;
+		D.setIncidentFace(e1, lbp.rightArc.cell);
+		D.setIncidentFace(e1.twin, rbp.rightArc.cell);
+		setTracedDirection(lbp);
+
+		Arc _a;
+		_a = T.getRightArc(rbp.rightArc);
+		if (_a != null)
+			addCircleEvent(rbp.rightArc, rbp.leftArc.p, rbp.rightArc.p, _a.p, p.y);
+
+		_a = T.getLeftArc(lbp.leftArc);
+		if (_a != null)
+			addCircleEvent(lbp.leftArc, _a.p, lbp.leftArc.p, lbp.rightArc.p, p.y);
+	}
+
+	private void handleCircleEvent(Event e) {
+		BreakPoint[] bps = T.removeArc(e.dArc, e.p.y);
+		BreakPoint lbp = bps[0], rbp = bps[1], newbp = bps[2];
+		cancelCircleEvent(lbp.leftArc);
+		cancelCircleEvent(rbp.rightArc);
+
+		Vertex v = D.addVertex(e.p.x, e.p.y + e.radius);
+		v.vorVertex = true;
+
+		// lbp and rbp stop at v, so v is the end of the half-edges they traced
+		D.setEdgeOrigin(lbp.tracedEdge.twin, v);
+		D.setEdgeOrigin(rbp.tracedEdge.twin, v);
+
+		// new edge between points whose arcs now intersect at newbp
+		HalfEdge _e = D.addEdge();
+		D.setEdgeOrigin(_e, v);
+		D.setIncidentFace(_e, newbp.rightArc.cell);
+		D.setIncidentFace(_e.twin, newbp.leftArc.cell);
+		adjSites.get(newbp.rightArc.p).add(newbp.leftArc.p);
+		adjSites.get(newbp.leftArc.p).add(newbp.rightArc.p);
+		newbp.tracedEdge = _e;
+		setTracedDirection(newbp);
+
+		// Set next & prev pointers
+		HalfEdge e1 = lbp.tracedEdge;
+		HalfEdge e2 = rbp.tracedEdge.twin;
+		HalfEdge e3 = _e;
+		e1.next = e2; e2.prev = e1;
+		e2.twin.next = e3; e3.prev = e2.twin;
+		e3.twin.next = e1.twin; e1.twin.prev = e3.twin;
+		
+		Arc _a;
+		_a = T.getLeftArc(newbp.leftArc);
+		if (_a != null)
+			addCircleEvent(newbp.leftArc, _a.p, newbp.leftArc.p, newbp.rightArc.p, e.p.y);
+
+		_a = T.getRightArc(newbp.rightArc);
+		if (_a != null)
+			addCircleEvent(newbp.rightArc, newbp.leftArc.p, newbp.rightArc.p, _a.p, e.p.y);
+	}
+
+	// Queues the circle event at which arc, the arc of pj between those of pi and pk, disappears.
+	// That only happens if its breakpoints move towards each other, which is when pi, pj and pk
+	// turn clockwise, and not if the circle lies above the sweep line at ly, give or take rounding
+	// at the scale of the sites. A site inside the circle needs no check: the sweep reaches it
+	// first, and it cancels the event then. Only an event that gets queued is allocated.
+	private void addCircleEvent(Arc arc, Point pi, Point pj, Point pk, double ly) {
+		if ((pj.x - pi.x)*(pk.y - pi.y) - (pj.y - pi.y)*(pk.x - pi.x) >= 0)
+			return;
+		if (!circumcircle(pi.x, pi.y, pj.x, pj.y, pk.x, pk.y, circle))
+			return;
+
+		double x = circle[0], y = circle[1], r = circle[2];
+		if (!(y - ly <= EPSILON * magnitude))
+			return;
+
+		Event ce = newEvent();
+		ce.type = EventType.CircleEvent;
+		if (ce.ownsPoint) {
+			ce.p.x = x;
+			ce.p.y = y;
+		} else {
+			ce.p = new Point(x, y);
+			ce.ownsPoint = true;
+		}
+		ce.radius = r;
+		ce.dArc = arc;
+		ce.pi = pi; ce.pj = pj; ce.pk = pk;
+		arc.circleEvent = ce;
+		Q.add(ce);
+	}
+
+	// Drops the circle event of arc a, if it has one. It stays queued, as removing it from Q
+	// would take a search of the whole queue, and is skipped once polled.
+	private void cancelCircleEvent(Arc a) {
+		if (a.circleEvent != null) {
+			a.circleEvent.cancelled = true;
+			a.circleEvent = null;
+		}
+	}
+
+	// A breakpoint <l, r> moves along the bisector of l and r, keeping r on its left, so the
+	// half-edge it traces points along the perpendicular of r - l.
+	private void setTracedDirection(BreakPoint bp) {
+		Point l = bp.leftArc.p, r = bp.rightArc.p;
+		D.setDirection(bp.tracedEdge, r.y - l.y, l.x - r.x);
+	}
+
+	// Circle through a, b and c, returned in out as the x and y of its lowest point and its
+	// radius. Returns false if the points are collinear.
+	static boolean circumcircle(double ax, double ay, double bx, double by, double cx, double cy, double[] out) {
+
+		// Calculate the circle
+		double A = bx - ax;
+		double B = by - ay;
+		double C = cx - ax;
+		double _D = cy - ay;
+		double E = A*(ax+bx) + B*(ay+by);
+		double F = C*(ax+cx) + _D*(ay+cy);
+		double G = 2*(A*(cy-by) - B*(cx-bx));
+		if (G == 0)
+			return false; // Points are collinear
+
+		// Circle with radius r and origin o
+		double ox = (_D*E-B*F)/G;
+		double oy = (A*F-C*E)/G;
+		double r = Math.sqrt((ox-ax)*(ox-ax) + (oy-ay)*(oy-ay));
+
+		out[0] = ox;
+		out[1] = oy - r;
+		out[2] = r;
+
+		return true;
+	}
+
+	// Voronoi cell containing (x, y), which is the cell of the nearest site
+	public Face cellAt(double x, double y) {
+		if (siteCoords != sitePoints.size()) {
+			if (siteX.length < sitePoints.size()) {
+				siteX = new double[sitePoints.size()];
+				siteY = new double[sitePoints.size()];
+			}
+			for (int i = 0; i < sitePoints.size(); i++) {
+				siteX[i] = sitePoints.get(i).x;
+				siteY[i] = sitePoints.get(i).y;
+			}
+			siteCoords = sitePoints.size();
+		}
+		int i = GeomKernels.nearest(siteX, siteY, sitePoints.size(), x, y);
+		return (i < 0 || cells == null ? null : cells[i+1]);
+	}
+
+	// Cocircular sites leave one circle event per arc that disappears at the same center (see
+	// DelaunayTriangulation), each with its own Voronoi vertex. Collapse the edges between them,
+	// which rounding leaves shorter than weldTolerance times the largest site coordinate, so the
+	// diagram has no zero-length edges.
+	private void weldVertices() {
+
+		if (weldTolerance <= 0)
+			return;
+
+		D.weldVertices(weldTolerance * magnitude);
+	}
+
+	private void addBoundingBox() {
+		
+		// Determine the bounding box
+		double left = 0, right = 0, top = 0, bottom = 0;
+		for (Vertex v : D.vertices) {
+			if (v.coord.x < left)
+				left = v.coord.x;
+			if (v.coord.x > right)
+				right = v.coord.x;
+			if (v.coord.y > top)
+				top = v.coord.y;
+			if (v.coord.y < bottom)
+				bottom = v.coord.y;
+		}
+		for (Point p : sitePoints) {
+			if (p.x < left)
+				left = p.x;
+			if (p.x > right)
+				right = p.x;
+			if (p.y > top)
+				top = p.y;
+			if (p.y < bottom)
+				bottom = p.y;
+		}
+		// Add some buffer between outermost sites/vertices and the box
+		left	*= 1.5;
+		right	*= 1.5;
+		top		*= 1.5;
+		bottom	*= 1.5;
+		Vertex v1 = D.addVertex(left, top);
+		Vertex v2 = D.addVertex(right, top);
+		Vertex v3 = D.addVertex(right, bottom);
+		Vertex v4 = D.addVertex(left, bottom);
+		HalfEdge e12 = D.addEdge(v1, v2); // top edge
+		HalfEdge e23 = D.addEdge(v2, v3); // right edge
+		HalfEdge e34 = D.addEdge(v3, v4); // bottom edge
+		HalfEdge e41 = D.addEdge(v4, v1); // left edge
+		v1.incidentEdge = e12; v1.vorVertex = false;
+		v2.incidentEdge = e23; v2.vorVertex = false;
+		v3.incidentEdge = e34; v3.vorVertex = false;
+		v4.incidentEdge = e41; v4.vorVertex = false;
+		e12.next = e23; e12.prev = e41;
+		e23.next = e34; e23.prev = e12;
+		e34.next = e41; e34.prev = e23;
+		e41.next = e12; e41.prev = e34;
+		e12.twin.next = e41.twin; e12.twin.prev = e23.twin;
+		e41.twin.next = e34.twin; e41.twin.prev = e12.twin;
+		e34.twin.next = e23.twin; e34.twin.prev = e41.twin;
+		e23.twin.next = e12.twin; e23.twin.prev = e34.twin;
+		Face f0 = D.addFace();
+		f0.innerComponents.add(e12);
+		e12.incidentFace = e23.incidentFace = e34.incidentFace = e41.incidentFace = f0;
+		// Initialize boundary lists and add outer edges of the bounding box (edges that traverse cw)
+		topEdges.clear(); topEdges.add(e12);
+		rightEdges.clear(); rightEdges.add(e23);
+		bottomEdges.clear(); bottomEdges.add(e34);
+		leftEdges.clear(); leftEdges.add(e41);
+		if (sitePoints.isEmpty()) // Just the box, with no cell inside it
+			return;
+		// Add these edges at the end to avoid modifying the list we are iterating.
+		newEdges.clear();
+		
+		int clipped = 0;
+		for (HalfEdge e : D.edges) {
+			if (token != null)
+				token.step("clipping", clipped++, D.edges.size());
+			HalfEdge _e = null; // Determine edge whose origin will intersect with the bounding box
+			if ( e.origin == null)
+				_e = e.twin;
+			else if (e.twin.origin == null)
+				_e = e;
+
+			if (_e != null) {
+				if (_e.origin == null) {
+					// No origin...Must be the case of collinear points with all vertical edges
+					collinear = true;
+					boundVerticalLines(top, topEdges, bottom, bottomEdges);
+					break;
+				}
+				
+				// Leave the box through whichever side the ray reaches first
+				Point o = _e.origin.coord;
+				double tx = (_e.dx > 0 ? (right - o.x) / _e.dx : (_e.dx < 0 ? (left - o.x) / _e.dx : Double.POSITIVE_INFINITY));
+				double ty = (_e.dy > 0 ? (top - o.y) / _e.dy : (_e.dy < 0 ? (bottom - o.y) / _e.dy : Double.POSITIVE_INFINITY));
+				List<HalfEdge> side;
+				double x, y;
+				if (tx < ty) {
+					side = (_e.dx > 0 ? rightEdges : leftEdges);
+					x = (_e.dx > 0 ? right : left);
+					y = o.y + tx * _e.dy;
+				} else {
+					side = (_e.dy > 0 ? topEdges : bottomEdges);
+					x = o.x + ty * _e.dx;
+					y = (_e.dy > 0 ? top : bottom);
+				}
+				HalfEdge e_new = D.intersectEdge(getBoundaryEdge(side, x, y), _e, x, y);
+				side.add(e_new);
+				newEdges.add(e_new); newEdges.add(e_new.twin);
+//				System.out.println(D);
+			}
+		}
+		D.edges.addAll(newEdges);
+
+		// Sides of the box no edge ran into belong to the same cell as the side before them
+		for (HalfEdge e : new HalfEdge[]{ e12.twin, e23.twin, e34.twin, e41.twin }) {
+			HalfEdge _e = e.prev;
+			while (_e.incidentFace == null && _e != e)
+				_e = _e.prev;
+			D.setIncidentFace(e, (_e.incidentFace != null ? _e.incidentFace : cells[1])); // cells[1] if only one site
+		}
+	}
+	
+	// Finds the piece of a side of the bounding box that (x, y) lies on
+	private HalfEdge getBoundaryEdge(List<HalfEdge> side, double x, double y) {
+		for (HalfEdge e : side) {
+			Point a = e.origin.coord, b = e.twin.origin.coord;
+			if (Math.min(a.x, b.x) <= x && x <= Math.max(a.x, b.x) &&
+				Math.min(a.y, b.y) <= y && y <= Math.max(a.y, b.y))
+				return e;
+		}
+
+		return null;
+	}
+
+	private void boundVerticalLines(double top, List<HalfEdge> tE, double bottom, List<HalfEdge> bE) {
+		
+		// The sweep pairs sites in insertion order, so hand the free edges out again in x order
+		Face[] byX = Arrays.copyOfRange(cells, 1, cells.length);
+		Arrays.sort(byX, new Comparator<Face>() {
+			public int compare(Face f1, Face f2) {
+				return Double.compare(f1.site.x, f2.site.x);
+			}
+		});
+		HalfEdge e1, e2;
+		for (int i = 0; i < byX.length-1; i++) {
+			double x_mid = byX[i].site.x + (byX[i+1].site.x - byX[i].site.x) / 2;
+			e1 = D.edges.get(2*i); // runs upwards, so it bounds the left cell
+			e2 = e1.twin;
+			e1.incidentFace = byX[i];
+			e2.incidentFace = byX[i+1];
+			byX[i].outerComponent = e1;
+			byX[i+1].outerComponent = e2;
+			
+			HalfEdge e_new = D.intersectEdge(getBoundaryEdge(tE, x_mid, top), e1, x_mid, top);
+			tE.add(e_new);
+			D.edges.add(e_new); D.edges.add(e_new.twin);
+
+			e_new = D.intersectEdge(getBoundaryEdge(bE, x_mid, bottom), e2, x_mid, bottom);
+			bE.add(e_new);
+			D.edges.add(e_new); D.edges.add(e_new.twin);
+		}
+	}
+	
+	// Queues the site events along with the Voronoi cell of each site, numbered by its index
+	private void addSiteEvents() {
+		if (cells == null || cells.length != sitePoints.size() + 1)
+			cells = new Face[sitePoints.size() + 1];
+
+		for (int i = 0; i < sitePoints.size(); i++) {
+			Event e = newEvent();
+			e.p = sitePoints.get(i);
+			e.ownsPoint = false;
+			e.type = EventType.SiteEvent;
+
+			e.cell = cells[i+1] = D.addFace();
+			e.cell.id = i+1;
+			e.cell.site = e.p;
+			Q.add(e);
+		}
+	}
+
+	// Reads the next site of siteStream and queues its event, as addSiteEvents() does for all
+	// sites at once
+	private void queueNextSite() {
+		try {
+			if (!siteStream.next())
+				return;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		int i = sitePoints.size();
+		Point p = newSite(siteStream.x, siteStream.y);
+		sitePoints.add(p);
+		magnitude = Math.max(magnitude, Math.max(Math.abs(p.x), Math.abs(p.y)));
+		if (i == adjPool.size())
+			adjPool.add(new ArrayList<Point>());
+		adjPool.get(i).clear();
+		adjSites.put(p, adjPool.get(i));
+
+		Event e = newEvent();
+		e.p = p;
+		e.ownsPoint = false;
+		e.type = EventType.SiteEvent;
+		e.cell = cells[i+1] = D.addFace();
+		e.cell.id = i+1;
+		e.cell.site = p;
+		Q.add(e);
+	}
+
+	private Event newEvent() {
+		if (eventPoolUsed == eventPool.size())
+			eventPool.add(new Event());
+		Event e = eventPool.get(eventPoolUsed++);
+		e.cell = null;
+		e.pi = e.pj = e.pk = null;
+		e.dArc = null;
+		e.radius = 0;
+		e.cancelled = false;
+
+		return e;
+	}
+
+	public class Event implements Comparable<Event> {
+		Point p;
+		boolean ownsPoint;	// p belongs to this event and is reused, rather than being a site
+		EventType type;
+		
+		// Site event variables
+		Face cell;
+
+		// Circle event variables
+		Point pi, pj, pk;
+		Arc dArc;
+		double radius;
+		boolean cancelled;	// A false alarm, left in the queue to be skipped
+
+		// Falling y, and rising x at the same y, so the sites of a row come left to right
+		public int compareTo(Event o) {
+			int c = Double.compare(o.p.y, p.y);
+			return (c != 0 ? c : Double.compare(p.x, o.p.x));
+		}
+	}
+
+	enum EventType { 
+		SiteEvent,
+		CircleEvent
+	}
+}
@@ -0,0 +1,147 @@
+package edu.isu.mattga;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.isu.mattga.DCEL.Face;
+
+// Builds only the Voronoi cells that reach into a window, from the sites near it rather than all
+// of them. The sites are kept in a grid. A query sweeps the sites in a halo around the window and
+// cuts their cells off at the window, then sweeps again with the sites its cells could still be
+// cut by, found from their corners, until all of them are final. One query runs at a time.
+public class WindowedBuilder {
+
+	static final int	SITES_PER_BUCKET = 4;	// Mean sites in each square of the grid
+	static final double	FIRST_HALO = 4;			// Width of the first halo, in mean site spacings
+
+	private final double[]		xs, ys;			// The sites, by index
+	private final double[]		extent;			// Of the sites, as left, right, bottom, top
+	private final double		spacing;		// Mean distance between sites
+	private final int			gridX, gridY;
+	private final int[]			bucketStart;	// Sites of bucket j * gridX + i are order[bucketStart[k]..bucketStart[k+1]]
+	private final int[]			order;
+	private final VoronoiDiagram	vd = new VoronoiDiagram();
+
+	public WindowedBuilder(List<Point> sites) {
+		int n = sites.size();
+		xs = new double[n];
+		ys = new double[n];
+		extent = new double[]{ Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		for (int k = 0; k < n; k++) {
+			xs[k] = sites.get(k).x;
+			ys[k] = sites.get(k).y;
+			extent[0] = Math.min(extent[0], xs[k]);
+			extent[1] = Math.max(extent[1], xs[k]);
+			extent[2] = Math.min(extent[2], ys[k]);
+			extent[3] = Math.max(extent[3], ys[k]);
+		}
+
+		double w = extent[1] - extent[0], h = extent[3] - extent[2];
+		double s = Math.sqrt(w * h / Math.max(1, n));
+		spacing = (s > 0 ? s : Math.max(Math.max(w, h) / Math.max(1, n), 1e-9));
+
+		// Sites sorted by bucket, with a counting sort
+		double side = spacing * Math.sqrt(SITES_PER_BUCKET);
+		gridX = (int)Math.max(1, Math.min(1 << 12, Math.ceil(w / side)));
+		gridY = (int)Math.max(1, Math.min(1 << 12, Math.ceil(h / side)));
+		bucketStart = new int[gridX * gridY + 1];
+		order = new int[n];
+		for (int k = 0; k < n; k++)
+			bucketStart[bucket(column(xs[k]), row(ys[k])) + 1]++;
+		for (int b = 0; b < gridX * gridY; b++)
+			bucketStart[b+1] += bucketStart[b];
+		int[] at = Arrays.copyOf(bucketStart, gridX * gridY);
+		for (int k = 0; k < n; k++)
+			order[at[bucket(column(xs[k]), row(ys[k]))]++] = k;
+	}
+
+	// Cells of the sites whose cells reach into the window from (l, b) to (r, t), cut off at the
+	// window, each with the index of its site as its id
+	public List<CellPolygon> build(double l, double b, double r, double t) {
+		List<CellPolygon> cells = new ArrayList<CellPolygon>();
+		if (xs.length == 0 || !(l < r && b < t))
+			return cells;
+
+		double halo = FIRST_HALO * spacing;
+		double[] known = { l - halo, r + halo, b - halo, t + halo };
+		for (;;) {
+			List<Point> sites = new ArrayList<Point>();
+			List<Integer> ids = new ArrayList<Integer>();
+			gather(known, sites, ids);
+
+			double[] need = known.clone();
+			boolean fin = false;
+			if (!sites.isEmpty()) {
+				vd.setSites(sites);
+				vd.build();
+				Map<Point2D.Double,Face> bySite = new HashMap<Point2D.Double,Face>();
+				for (int k = 1; k < vd.cells.length; k++)
+					bySite.put(TiledBuilder.siteKey(vd.cells[k].site.x, vd.cells[k].site.y), vd.cells[k]);
+
+				cells.clear();
+				fin = true;
+				for (int q = 0; q < sites.size(); q++) {
+					Point p = sites.get(q);
+					Face f = bySite.get(TiledBuilder.siteKey(p.x, p.y)); // A duplicate shares the cell of the site kept
+
+					CellPolygon c = new CellPolygon(ids.get(q), p.x, p.y, vd.adjSites.get(f.site));
+					c.clip(f.site, l, b, r, t);
+					if (c.n < 3)
+						continue;
+					if (c.isFinal(f.site, extent, known, need))
+						cells.add(c);
+					else
+						fin = false;
+				}
+			}
+			if (fin)
+				return cells;
+
+			// The cells can only shrink, so the sites they need are in need. Should rounding, or
+			// finding no sites at all, leave that no wider than what was known, widen it anyway.
+			if (Arrays.equals(need, known)) {
+				halo *= 2;
+				need[0] -= halo;
+				need[1] += halo;
+				need[2] -= halo;
+				need[3] += halo;
+			}
+			known = need;
+		}
+	}
+
+	// Sites in the known region, with their indices
+	private void gather(double[] known, List<Point> sites, List<Integer> ids) {
+		int i0 = column(known[0]), i1 = column(known[1]), j0 = row(known[2]), j1 = row(known[3]);
+		for (int j = j0; j <= j1; j++) {
+			for (int i = i0; i <= i1; i++) {
+				int k = bucket(i, j);
+				for (int o = bucketStart[k]; o < bucketStart[k+1]; o++) {
+					int q = order[o];
+					if (xs[q] >= known[0] && xs[q] <= known[1] && ys[q] >= known[2] && ys[q] <= known[3]) {
+						sites.add(new Point(xs[q], ys[q]));
+						ids.add(q);
+					}
+				}
+			}
+		}
+	}
+
+	private int bucket(int i, int j) {
+		return j * gridX + i;
+	}
+
+	private int column(double x) {
+		double w = extent[1] - extent[0];
+		return (w > 0 ? (int)Math.max(0, Math.min(gridX - 1, (x - extent[0]) / w * gridX)) : 0);
+	}
+
+	private int row(double y) {
+		double h = extent[3] - extent[2];
+		return (h > 0 ? (int)Math.max(0, Math.min(gridY - 1, (y - extent[2]) / h * gridY)) : 0);
+	}
+}